@@ -0,0 +1,226 @@
+"""
+Load benchmark for the /api/books/{id}/info endpoint.
+
+Compares request throughput of the platform thread mode and the virtual thread mode
+(spring.threads.virtual.enabled) at the same fixed heap. For every mode the backend jar is
+started with -Xms/-Xmx set to --heap, pointed at a local stub of Google Books and Open Library
+that answers after --upstream-delay-ms, so every request is a slow cache miss. The benchmark then
+imports --requests books with fresh ISBNs and requests the info of each of them once, with
+--concurrency requests in flight.
+
+Requires MongoDB and Redis as configured in application.properties (e.g. `make start-dev`),
+a built jar (`./gradlew bootJar`) and only the Python standard library.
+High concurrency needs enough file descriptors, e.g. `ulimit -n 65536`.
+
+Usage:
+    python benchmark/info_load.py --jar build/libs/backend-0.0.1-SNAPSHOT.jar --heap 512m
+"""
+
+import argparse
+import asyncio
+import json
+import random
+import subprocess
+import threading
+import time
+import urllib.request
+from urllib.parse import parse_qs, urlsplit
+
+MODES = {"platform": "false", "virtual": "true"}
+
+
+# region Upstream stub
+async def serve_upstream(reader, writer, delay):
+    try:
+        while True:
+            request = await reader.readuntil(b"\r\n\r\n")
+            target = request.split(b" ", 2)[1].decode()
+            await asyncio.sleep(delay)
+
+            url = urlsplit(target)
+            if url.path.startswith("/books/v1/volumes"):
+                body = {"items": [{"volumeInfo": {"title": "Benchmark Book", "authors": ["Benchmark"]}}]}
+            else:
+                bibkeys = parse_qs(url.query).get("bibkeys", [""])[0].split(",")
+                body = {key: {"title": "Benchmark Book", "weight": "1 kg"} for key in bibkeys if key}
+            payload = json.dumps(body).encode()
+            writer.write(b"HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+                         + str(len(payload)).encode() + b"\r\n\r\n" + payload)
+            await writer.drain()
+    except (asyncio.IncompleteReadError, ConnectionError):
+        pass
+    finally:
+        writer.close()
+
+
+def start_upstream_stub(port, delay):
+    """Runs the upstream stub on its own event loop, so it never competes with the load generator."""
+    loop = asyncio.new_event_loop()
+
+    async def start():
+        return await asyncio.start_server(lambda r, w: serve_upstream(r, w, delay), "127.0.0.1", port,
+                                          backlog=4096)
+
+    loop.run_until_complete(start())
+    threading.Thread(target=loop.run_forever, daemon=True).start()
+# endregion
+
+
+# region Backend
+def start_backend(args, mode):
+    command = [
+        "java", f"-Xms{args.heap}", f"-Xmx{args.heap}", "-jar", args.jar,
+        f"--server.port={args.port}",
+        f"--spring.threads.virtual.enabled={MODES[mode]}",
+        f"--bookinfo.upstream.google-books.base-url=http://127.0.0.1:{args.stub_port}",
+        f"--bookinfo.upstream.open-library.base-url=http://127.0.0.1:{args.stub_port}",
+        # Only the threading model should differ, so lift every other limit on upstream calls
+        "--bookinfo.enrichment.enabled=false",
+        "--bookinfo.cache.refresh-ahead.enabled=false",
+        "--bookinfo.upstream.queue-capacity=100000",
+        "--bookinfo.upstream.http.pool-wait-ms=30000",
+        "--bookinfo.upstream.rate-limit.max-wait-ms=30000",
+    ]
+    for upstream in ("google-books", "open-library"):
+        command += [
+            f"--bookinfo.upstream.{upstream}.timeout-ms=30000",
+            f"--bookinfo.upstream.{upstream}.max-concurrent=100000",
+            f"--bookinfo.upstream.{upstream}.max-connections={args.concurrency}",
+            f"--bookinfo.upstream.{upstream}.rate-per-second=1000000",
+            f"--bookinfo.upstream.{upstream}.burst=1000000",
+        ]
+    process = subprocess.Popen(command, stdout=subprocess.DEVNULL, stderr=subprocess.DEVNULL)
+
+    deadline = time.time() + 120
+    while time.time() < deadline:
+        try:
+            if get_json(args, "/actuator/health").get("status") == "UP":
+                return process
+        except OSError:
+            pass
+        time.sleep(1)
+    process.kill()
+    raise RuntimeError(f"Backend did not start in {mode} mode")
+
+
+def get_json(args, path):
+    with urllib.request.urlopen(f"http://127.0.0.1:{args.port}{path}", timeout=60) as response:
+        return json.load(response)
+
+
+def metric(args, name, tag=None):
+    path = f"/actuator/metrics/{name}" + (f"?tag={tag}" if tag else "")
+    return get_json(args, path)["measurements"][0]["value"]
+
+
+def create_books(args):
+    """Imports books with fresh ISBNs and returns their ids, so no request hits the cache."""
+    isbns = {str(random.randrange(10 ** 12, 10 ** 13)) for _ in range(args.requests)}
+    body = "\n".join(json.dumps({"isbn": isbn, "title": "Benchmark Book"}) for isbn in isbns).encode()
+    request = urllib.request.Request(f"http://127.0.0.1:{args.port}/api/books/import", data=body,
+                                     headers={"Content-Type": "application/x-ndjson"}, method="POST")
+    urllib.request.urlopen(request, timeout=600).close()
+
+    ids = []
+    with urllib.request.urlopen(f"http://127.0.0.1:{args.port}/api/books/export", timeout=600) as response:
+        for line in response:
+            book = json.loads(line)
+            if book["isbn"] in isbns:
+                ids.append(book["id"])
+    return ids
+# endregion
+
+
+# region Load
+async def read_response(reader):
+    head = await reader.readuntil(b"\r\n\r\n")
+    status = int(head.split(b" ", 2)[1])
+    headers = {}
+    for line in head.split(b"\r\n")[1:]:
+        if b":" in line:
+            key, value = line.split(b":", 1)
+            headers[key.strip().lower()] = value.strip()
+    if b"content-length" in headers:
+        await reader.readexactly(int(headers[b"content-length"]))
+    elif headers.get(b"transfer-encoding") == b"chunked":
+        while True:
+            size = int((await reader.readuntil(b"\r\n")).strip(), 16)
+            await reader.readexactly(size + 2)
+            if size == 0:
+                break
+    return status
+
+
+async def worker(args, paths, latencies, errors):
+    reader, writer = await asyncio.open_connection("127.0.0.1", args.port)
+    try:
+        while paths:
+            path = paths.pop()
+            start = time.perf_counter()
+            writer.write(f"GET {path} HTTP/1.1\r\nHost: localhost\r\n\r\n".encode())
+            await writer.drain()
+            if await read_response(reader) == 200:
+                latencies.append(time.perf_counter() - start)
+            else:
+                errors.append(path)
+    except (asyncio.IncompleteReadError, ConnectionError) as e:
+        errors.append(str(e))
+    finally:
+        writer.close()
+
+
+async def run_load(args, ids):
+    paths = [f"/api/books/{book_id}/info" for book_id in ids]
+    latencies, errors = [], []
+    start = time.perf_counter()
+    await asyncio.gather(*(worker(args, paths, latencies, errors) for _ in range(args.concurrency)))
+    return time.perf_counter() - start, sorted(latencies), errors
+# endregion
+
+
+def benchmark(args, mode):
+    process = start_backend(args, mode)
+    try:
+        ids = create_books(args)
+        elapsed, latencies, errors = asyncio.run(run_load(args, ids))
+        percentile = lambda p: latencies[min(len(latencies) - 1, int(p * len(latencies)))] * 1000 if latencies else 0
+        return {
+            "mode": mode,
+            "requests": len(latencies),
+            "errors": len(errors),
+            "throughput": len(latencies) / elapsed,
+            "p50": percentile(0.50),
+            "p99": percentile(0.99),
+            "threads": metric(args, "jvm.threads.peak"),
+            "heap": metric(args, "jvm.memory.used", "area:heap") / 2 ** 20,
+        }
+    finally:
+        process.terminate()
+        process.wait()
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--jar", required=True, help="Backend jar to benchmark")
+    parser.add_argument("--heap", default="512m", help="Fixed heap size of the backend")
+    parser.add_argument("--requests", type=int, default=20000, help="Info requests per mode")
+    parser.add_argument("--concurrency", type=int, default=2000, help="Requests in flight")
+    parser.add_argument("--upstream-delay-ms", type=int, default=500, help="Answer delay of the upstream stub")
+    parser.add_argument("--port", type=int, default=18080, help="Port of the backend")
+    parser.add_argument("--stub-port", type=int, default=18081, help="Port of the upstream stub")
+    parser.add_argument("--modes", nargs="+", choices=MODES, default=list(MODES), help="Modes to compare")
+    args = parser.parse_args()
+
+    start_upstream_stub(args.stub_port, args.upstream_delay_ms / 1000)
+    results = [benchmark(args, mode) for mode in args.modes]
+
+    print(f"heap {args.heap}, {args.concurrency} concurrent requests, upstream delay {args.upstream_delay_ms} ms")
+    print(f"{'mode':<10}{'requests':>10}{'errors':>8}{'req/s':>10}{'p50 ms':>10}{'p99 ms':>10}"
+          f"{'peak threads':>14}{'heap MiB':>10}")
+    for r in results:
+        print(f"{r['mode']:<10}{r['requests']:>10}{r['errors']:>8}{r['throughput']:>10.1f}{r['p50']:>10.0f}"
+              f"{r['p99']:>10.0f}{r['threads']:>14.0f}{r['heap']:>10.0f}")
+
+
+if __name__ == "__main__":
+    main()
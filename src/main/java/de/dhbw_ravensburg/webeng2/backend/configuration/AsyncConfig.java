@@ -0,0 +1,77 @@
+package de.dhbw_ravensburg.webeng2.backend.configuration;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    /**
+     * Bounded pool used by the BookInfoService to query the Google Books and
+     * Open Library APIs concurrently. Lookups that don't fit into the queue are
+     * rejected instead of piling up, the caller treats them as a missing source.
+     * With virtual threads enabled every lookup gets its own virtual thread instead,
+     * a lookup blocked on I/O then costs no platform thread. Concurrency is still
+     * bounded by the bulkhead of each upstream.
+     */
+    @Bean
+    public AsyncTaskExecutor upstreamExecutor(
+            @Value("${bookinfo.upstream.pool-size:16}") int poolSize,
+            @Value("${bookinfo.upstream.queue-capacity:200}") int queueCapacity,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("bookinfo-upstream-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("bookinfo-upstream-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * Bounded pool running background refreshes of stale BookInfo entries.
+     * Refreshes that don't fit into the queue are dropped, a later request schedules them again.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor refreshExecutor(
+            @Value("${bookinfo.cache.refresh-ahead.pool-size:2}") int poolSize,
+            @Value("${bookinfo.cache.refresh-ahead.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("bookinfo-refresh-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * Bounded pool running the BookInfoEnrichmentQueue. Its work queue is the enrichment queue,
+     * ISBNs that don't fit are dropped and fetched on their first request instead.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor enrichmentExecutor(
+            @Value("${bookinfo.enrichment.pool-size:2}") int poolSize,
+            @Value("${bookinfo.enrichment.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("bookinfo-enrichment-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
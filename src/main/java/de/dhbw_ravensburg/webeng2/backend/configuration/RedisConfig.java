@@ -0,0 +1,47 @@
+package de.dhbw_ravensburg.webeng2.backend.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisKeyValueAdapter.EnableKeyspaceEvents;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import de.dhbw_ravensburg.webeng2.backend.service.BookInfoNearCache;
+import de.dhbw_ravensburg.webeng2.backend.service.LibraryInventoryIndex;
+
+@Configuration
+// Keyspace events let the repository clean up its index when a BookInfo hash expires
+@EnableRedisRepositories(value = "de.dhbw_ravensburg.webeng2.backend.repos", enableKeyspaceEvents = EnableKeyspaceEvents.ON_STARTUP)
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            final RedisConnectionFactory connectionFactory, final BookInfoNearCache nearCache,
+            final LibraryInventoryIndex inventoryIndex) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(nearCache, new ChannelTopic(BookInfoNearCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(inventoryIndex, new ChannelTopic(LibraryInventoryIndex.CHANGE_CHANNEL));
+        return container;
+    }
+
+    @Bean
+    public ReactiveRedisTemplate<String, byte[]> reactiveBookInfoRedisTemplate(
+            final ReactiveRedisConnectionFactory connectionFactory) {
+        // Redis repositories have no reactive variant, BookInfo hashes are read raw and mapped with the RedisConverter
+        RedisSerializationContext<String, byte[]> context = RedisSerializationContext
+                .<String, byte[]>newSerializationContext(RedisSerializer.byteArray())
+                .key(RedisSerializer.string())
+                .hashKey(RedisSerializer.byteArray())
+                .hashValue(RedisSerializer.byteArray())
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+
+}
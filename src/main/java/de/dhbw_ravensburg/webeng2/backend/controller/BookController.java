@@ -1,16 +1,27 @@
 package de.dhbw_ravensburg.webeng2.backend.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.ErrorResponse;
@@ -28,17 +39,26 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import de.dhbw_ravensburg.webeng2.backend.model.Book;
+import de.dhbw_ravensburg.webeng2.backend.model.BulkImportResult;
+import de.dhbw_ravensburg.webeng2.backend.model.CursorPage;
 import de.dhbw_ravensburg.webeng2.backend.repos.BookRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import org.springframework.web.bind.annotation.PostMapping;
 
+import de.dhbw_ravensburg.webeng2.backend.service.BookInfoEnrichmentQueue;
 import de.dhbw_ravensburg.webeng2.backend.service.BookInfoService;
+import de.dhbw_ravensburg.webeng2.backend.service.BookSearchIndex;
+import de.dhbw_ravensburg.webeng2.backend.service.BulkImportService;
+import de.dhbw_ravensburg.webeng2.backend.service.CatalogExportService;
 import de.dhbw_ravensburg.webeng2.backend.model.BookInfo;
 import de.dhbw_ravensburg.webeng2.backend.model.Library;
 
@@ -54,6 +74,24 @@ public class BookController {
     @Autowired
     private BookInfoService bookInfoService;
 
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private BookInfoEnrichmentQueue enrichmentQueue;
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private CatalogExportService exportService;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${bookinfo.batch.max-size:100}")
+    private int batchMaxSize;
+
     // #region GET all Books
     @GetMapping("/")
     @Operation(summary = "Get all Books", description = "Retrieves a paginated and optionally sorted list of books.")
@@ -77,6 +115,30 @@ public class BookController {
     }
     // #endregion
 
+    // #region GET all Books by cursor
+    @GetMapping("/scroll")
+    @Operation(summary = "Get all Books by cursor", description = "Retrieves a slice of the optionally sorted list of books. Pass the returned cursor to get the next slice, deep slices cost the same as the first one.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
+            @ApiResponse(responseCode = "404", description = "No books in Database")
+    })
+    public ResponseEntity<CursorPage<Book>> scrollBooks(
+            @Parameter(description = "Cursor returned with the previous slice") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Slice size") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort,
+            @Parameter(description = "Also count all books") @RequestParam(defaultValue = "false") boolean count) {
+        CursorPage<Book> books = repository.scrollAll(cursor, size, Sort.by(sort), count);
+        if (books.isEmpty()) {
+            // If no books are found, return a 404 Not Found
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        // Return the slice of books with a 200 OK status
+        return new ResponseEntity<>(books, HttpStatus.OK);
+    }
+    // #endregion
+
     // #region POST new Book
     @PostMapping("/")
     @Operation(summary = "Create new Book", description = "Creates a new book.")
@@ -93,11 +155,47 @@ public class BookController {
             throw new BookException("Can't convert input to Book");
         }
         Book savedBook = repository.save(b);
+        enrichmentQueue.enqueue(savedBook.getIsbn());
         // Return the saved book with a 201 status code
         return new ResponseEntity<>(savedBook, HttpStatus.CREATED);
     }
     // #endregion
 
+    // #region POST import Books
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Import Books", description = "Imports newline-delimited JSON books in bulk. Books with an existing ISBN are updated, invalid records are reported by line number.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished, see the result for failed records"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<BulkImportResult> importBooks(
+            @Parameter(description = "One JSON book per line") InputStream body) throws IOException {
+        return new ResponseEntity<>(bulkImportService.importBooks(body), HttpStatus.OK);
+    }
+    // #endregion
+
+    // #region GET export Books
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export all Books", description = "Streams all books as newline-delimited JSON in a single response.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully exported books")
+    })
+    public void exportBooks(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        exportService.exportBooks(response.getOutputStream());
+    }
+
+    @GetMapping(value = "/exportinfo", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export all cached BookInfo", description = "Streams all cached book information as newline-delimited JSON in a single response.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully exported book information")
+    })
+    public void exportBookInfos(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        exportService.exportBookInfos(response.getOutputStream());
+    }
+    // #endregion
+
     // #region GET Book by ID
     @GetMapping("/{id}")
     @Operation(summary = "Get Book by ID", description = "Retrieves a book")
@@ -119,31 +217,34 @@ public class BookController {
             @ApiResponse(responseCode = "200", description = "Successfully updated book"),
             @ApiResponse(responseCode = "400", description = "Invalid book data provided"),
             @ApiResponse(responseCode = "204", description = "No Content"),
-            @ApiResponse(responseCode = "404", description = "Book does not exist")
+            @ApiResponse(responseCode = "404", description = "Book does not exist"),
+            @ApiResponse(responseCode = "409", description = "Book was changed concurrently or ISBN already exists"),
+            @ApiResponse(responseCode = "428", description = "Version missing")
     })
     public ResponseEntity<Book> updateBook(
             @Parameter(description = "The id of the book to edid") @PathVariable("id") String id,
-            @Parameter(description = "The book to be added to the repository") @Valid @RequestBody RequestEntity<Book> book) {
-        // Check if the book exists in the database
-        Optional<Book> existingBookOptional = repository.findById(id);
-
-        if (!existingBookOptional.isPresent()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if the book doesn't exist
-        }
+            @Parameter(description = "The book to be added to the repository, with the version last read to detect concurrent edits, 0 if it was read without version") @Valid @RequestBody RequestEntity<Book> book) {
         Book b = book.getBody();
         if (b == null) {
             throw new BookException("Can't convert input to Book");
         }
+        // Without the version a concurrent edit would be overwritten silently
+        if (b.getVersion() == null) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_REQUIRED);
+        }
+        // findAndModify skips the validating event listener
+        Set<ConstraintViolation<Book>> violations = validator.validate(b);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
 
-        // Get the existing book
-        Book existingBook = existingBookOptional.get();
-
-        // Update the fields of the existing book
-        existingBook.setIsbn(b.getIsbn());
-        existingBook.setTitle(b.getTitle());
-
-        // Save the updated book
-        Book updatedBook = repository.save(existingBook);
+        // Update the fields of the existing book in a single round trip
+        Book updatedBook = repository.updateVersioned(id, b.getVersion(), b);
+        if (updatedBook == null) {
+            return notFoundOrConflict(id);
+        }
+        searchIndex.indexBook(updatedBook);
+        enrichmentQueue.enqueue(updatedBook.getIsbn());
 
         // Return the updated book with a 200 OK status code
         return new ResponseEntity<>(updatedBook, HttpStatus.OK);
@@ -157,26 +258,31 @@ public class BookController {
             @ApiResponse(responseCode = "200", description = "Successfully deleted book"),
             @ApiResponse(responseCode = "400", description = "Invalid book data provided"),
             @ApiResponse(responseCode = "204", description = "No Content"),
-            @ApiResponse(responseCode = "404", description = "Book does not exist")
+            @ApiResponse(responseCode = "404", description = "Book does not exist"),
+            @ApiResponse(responseCode = "409", description = "Book was changed concurrently"),
+            @ApiResponse(responseCode = "428", description = "Version missing")
     })
     public ResponseEntity<Book> deleteBook(
-            @Parameter(description = "The id of the book to delete") @PathVariable("id") String id) {
-        // Check if the library exists in the database
-        Optional<Book> existingBookOptional = repository.findById(id);
-
-        if (!existingBookOptional.isPresent()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if the library doesn't exist
+            @Parameter(description = "The id of the book to delete") @PathVariable("id") String id,
+            @Parameter(description = "The version last read, detects concurrent edits, 0 if it was read without version") @RequestParam(required = false) Long version) {
+        if (version == null) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_REQUIRED);
         }
-
-        // Get the existing library
-        Book existingBook = existingBookOptional.get();
-
-        // Delete the updated library
-        repository.delete(existingBook);
+        // Delete the book in a single round trip
+        Book deletedBook = repository.deleteVersioned(id, version);
+        if (deletedBook == null) {
+            return notFoundOrConflict(id);
+        }
+        searchIndex.removeBook(id);
 
         // Return the status code
         return new ResponseEntity<>(HttpStatus.OK);
     }
+
+    private <T> ResponseEntity<T> notFoundOrConflict(String id) {
+        // Only reached when nothing matched, so the extra lookup is off the fast path
+        return new ResponseEntity<>(repository.existsById(id) ? HttpStatus.CONFLICT : HttpStatus.NOT_FOUND);
+    }
     // #endregion
 
     // #region GET find books by Title containing
@@ -205,6 +311,31 @@ public class BookController {
     }
     // #endregion
 
+    // #region GET find books by Title containing by cursor
+    @GetMapping("/searchTitle/scroll")
+    @Operation(summary = "Find Books by title by cursor", description = "Retrieves a slice of the optionally sorted list of books with matching title. Pass the returned cursor to get the next slice.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
+            @ApiResponse(responseCode = "404", description = "Books not found")
+    })
+    public ResponseEntity<CursorPage<Book>> scrollBooksByTitle(
+            @Parameter(description = "Title segment of the Book") @RequestParam("title") String title,
+            @Parameter(description = "Cursor returned with the previous slice") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Slice size") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort,
+            @Parameter(description = "Also count all matching books") @RequestParam(defaultValue = "false") boolean count) {
+        CursorPage<Book> books = repository.scrollByTitleContaining(title, cursor, size, Sort.by(sort), count);
+        if (books.isEmpty()) {
+            // If no books are found, return a 404 Not Found
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        // Return the slice of books with a 200 OK status
+        return new ResponseEntity<>(books, HttpStatus.OK);
+    }
+    // #endregion
+
     // #region GET find books by ISBN
     @GetMapping("/searchIsbn")
     @Operation(summary = "Find Books by ISBN", description = "Retrieves a Book by ISBN.")
@@ -240,23 +371,8 @@ public class BookController {
             @Parameter(description = "Page number") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
             @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort) {
-        // Retrieve books whose title contains the search string (case-insensitive)
-        Page<Book> books = repository.findByTitleContainingIgnoreCase(text, PageRequest.of(page, size, Sort.by(sort)));
-
-        // Get isbn search result
-        Optional<Book> book = repository.findByIsbn(text);
-
-        // Convert to list with ISBN result
-        List<Book> bl = new ArrayList<Book>();
-        if (!books.isEmpty()) {
-            bl = books.toList();
-        }
-        if (book.isPresent()) {
-            bl.add(book.get());
-        }
-        if (!bl.isEmpty()) {
-            books = convertListToPage(bl, PageRequest.of(page, size, Sort.by(sort)));
-        }
+        // Retrieve books whose ISBN matches or whose title contains the search string (case-insensitive)
+        Page<Book> books = repository.searchByIsbnOrTitle(text, PageRequest.of(page, size, Sort.by(sort)));
 
         if (books.isEmpty()) {
             // If no books are found, return a 404 Not Found
@@ -268,6 +384,35 @@ public class BookController {
     }
     // #endregion
 
+    // #region GET full text search for books
+    @GetMapping("/fulltext")
+    @Operation(summary = "Full text search for Books", description = "Retrieves a paginated list of books ordered by relevance. Every word of the text has to match a word of the title, authors or subjects, the last characters may be left out.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
+            @ApiResponse(responseCode = "404", description = "Books not found")
+    })
+    public ResponseEntity<Page<Book>> fullTextSearchBooks(
+            @Parameter(description = "Words to search for") @RequestParam("text") String text,
+            @Parameter(description = "Page number") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size) {
+        BookSearchIndex.SearchResult result = searchIndex.search(text, page, size);
+
+        // Load the books of the page and keep the relevance order
+        Map<String, Book> booksById = new HashMap<>();
+        repository.findAllById(result.ids()).forEach(b -> booksById.put(b.getId(), b));
+        List<Book> content = result.ids().stream().map(booksById::get).filter(Objects::nonNull).toList();
+
+        if (content.isEmpty()) {
+            // If no books are found, return a 404 Not Found
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        // Return the list of books with a 200 OK status
+        return new ResponseEntity<>(new PageImpl<>(content, PageRequest.of(page, size), result.total()), HttpStatus.OK);
+    }
+    // #endregion
+
     // #region GET book info by ID
     @GetMapping("/{id}/info")
     @Operation(summary = "Get Book Info", description = "Retrieves additional information for a specific book by its ID from google and openbook api")
@@ -289,17 +434,63 @@ public class BookController {
     @Operation(summary = "Get Random Book Info", description = "Retrieves additional information for a randomly selected book from google and openbook api")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved random book information"),
+            @ApiResponse(responseCode = "400", description = "No book available to pick from"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public BookInfo getRandomBookInfo() {
-        long count = repository.count();
-        int randomIndex = (int) (Math.random() * count);
-        Page<Book> bookPage = repository.findAll(Pageable.ofSize(1).withPage(randomIndex));
-        Book randomBook = bookPage.getContent().get(0);
+    public BookInfo getRandomBookInfo(
+            @Parameter(description = "Only pick among books whose information is already cached") @RequestParam(defaultValue = "false") boolean cached) {
+        if (cached) {
+            BookInfo bookInfo = bookInfoService.getRandomCachedBookInfo();
+            if (bookInfo == null) {
+                throw new BookException("No cached book info");
+            }
+            return bookInfo;
+        }
+        Book randomBook = repository.findRandom().orElseThrow(() -> new BookException("No books in Database"));
         return bookInfoService.getBookInfo(randomBook.getIsbn());
     }
     // #endregion
 
+    // #region GET book info for many books
+    @GetMapping("/batchinfo")
+    @Operation(summary = "Get Book Info for many Books", description = "Retrieves additional information for several books at once, identified by their IDs and/or ISBNs")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved book information"),
+            @ApiResponse(responseCode = "400", description = "Too many books requested"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public Map<String, BookInfo> getBatchBookInfo(
+            @Parameter(description = "The IDs of the books to get information for") @RequestParam(name = "id", defaultValue = "") List<String> ids,
+            @Parameter(description = "The ISBNs of the books to get information for") @RequestParam(name = "isbn", defaultValue = "") List<String> isbns) {
+        if (ids.size() + isbns.size() > batchMaxSize) {
+            throw new BookException("At most " + batchMaxSize + " books can be requested at once");
+        }
+
+        // Resolve all IDs with a single query
+        Map<String, String> isbnById = new HashMap<>();
+        repository.findAllById(ids).forEach(b -> isbnById.put(b.getId(), b.getIsbn()));
+
+        List<String> allIsbns = new ArrayList<>(isbnById.values());
+        allIsbns.addAll(isbns);
+        Map<String, BookInfo> infos = bookInfoService.getBookInfos(allIsbns);
+
+        // Key the result by what was requested, in request order
+        Map<String, BookInfo> result = new LinkedHashMap<>();
+        for (String id : ids) {
+            String isbn = isbnById.get(id);
+            if (isbn != null && infos.containsKey(isbn)) {
+                result.put(id, infos.get(isbn));
+            }
+        }
+        for (String isbn : isbns) {
+            if (infos.containsKey(isbn)) {
+                result.put(isbn, infos.get(isbn));
+            }
+        }
+        return result;
+    }
+    // #endregion
+
     // #region Exceptions
     @ExceptionHandler(IllegalArgumentException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
@@ -329,6 +520,13 @@ public class BookController {
                 HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler({ OptimisticLockingFailureException.class, DuplicateKeyException.class })
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ResponseEntity<ErrorResponse> onConflict(RuntimeException ex) {
+        return new ResponseEntity<>(ErrorResponse.create(ex, HttpStatus.CONFLICT, ex.getMessage()),
+                HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(com.mongodb.MongoWriteException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<ErrorResponse> onMongoWriteException(com.mongodb.MongoWriteException ex) {
@@ -336,19 +534,4 @@ public class BookController {
                 HttpStatus.BAD_REQUEST);
     }
     // #endregion
-
-    // #region Helper
-    public Page<Book> convertListToPage(List<Book> bookList, Pageable pageable) {
-        // Calculate the start and end index based on the page size and page number
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), bookList.size());
-
-        // Sublist to simulate the page
-        List<Book> pageContent = bookList.subList(start, end);
-
-        // Return a Page with content and pagination details
-        return new PageImpl<>(pageContent, pageable, bookList.size());
-    }
-
-    // #endregion
 }
@@ -1,12 +1,18 @@
 package de.dhbw_ravensburg.webeng2.backend.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -24,19 +30,29 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import de.dhbw_ravensburg.webeng2.backend.model.Book;
+import de.dhbw_ravensburg.webeng2.backend.model.BulkImportResult;
+import de.dhbw_ravensburg.webeng2.backend.model.CursorPage;
 import de.dhbw_ravensburg.webeng2.backend.model.Library;
 import de.dhbw_ravensburg.webeng2.backend.model.LibraryDTO;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryMatchDTO;
 import de.dhbw_ravensburg.webeng2.backend.repos.LibraryRepository;
+import de.dhbw_ravensburg.webeng2.backend.service.BulkImportService;
+import de.dhbw_ravensburg.webeng2.backend.service.CatalogExportService;
+import de.dhbw_ravensburg.webeng2.backend.service.LibraryInventoryIndex;
+import de.dhbw_ravensburg.webeng2.backend.service.LibraryInventoryStore;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
 
 @RestController
 @CrossOrigin(origins = "*", allowedHeaders = "*", methods = { RequestMethod.GET,
@@ -48,9 +64,29 @@ public class LibraryController {
         @Autowired
         private LibraryRepository repository;
 
+        @Autowired
+        private LibraryInventoryIndex inventoryIndex;
+
+        @Autowired
+        private LibraryInventoryStore inventoryStore;
+
+        @Autowired
+        private BulkImportService bulkImportService;
+
+        @Autowired
+        private CatalogExportService exportService;
+
+        @Value("${libraries.reading-list.max-size:200}")
+        private int readingListMaxSize;
+
+        @Value("${libraries.inventory.max-isbns-per-request:1000}")
+        private int inventoryMaxIsbnsPerRequest;
+
+        private static final Pattern ISBN = Pattern.compile(Book.ISBN_PATTERN);
+
         // #region GET all Libraries
         @GetMapping("/")
-        @Operation(summary = "Get all Libraries", description = "Retrieves a paginated and optionally sorted list of libraries.")
+        @Operation(summary = "Get all Libraries", description = "Retrieves a paginated and optionally sorted list of libraries. With lat and lon the result is ordered by distance instead.")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Successfully retrieved libraries"),
                         @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
@@ -59,18 +95,46 @@ public class LibraryController {
         public ResponseEntity<Page<LibraryDTO>> findLibraries(
                         @Parameter(description = "Page number") @RequestParam(defaultValue = "0") int page,
                         @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
-                        @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort) {
-                Page<Library> libraries = repository.findAll(PageRequest.of(page, size, Sort.by(sort)));
+                        @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort,
+                        @Parameter(description = "Latitude of the caller, orders the result by distance") @RequestParam(required = false) Double lat,
+                        @Parameter(description = "Longitude of the caller, orders the result by distance") @RequestParam(required = false) Double lon,
+                        @Parameter(description = "Maximum distance in kilometers, requires lat and lon") @RequestParam(required = false) Double radius) {
+                GeoJsonPoint location = toLocation(lat, lon, radius);
+                Page<LibraryDTO> libraries = location != null
+                                ? repository.findNear(location, radius, null, PageRequest.of(page, size))
+                                : repository.findProjectedBy(PageRequest.of(page, size, Sort.by(sort)));
                 if (libraries.isEmpty()) {
                         // If no libraries are found, return a 404 Not Found
                         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
                 }
 
                 // Return the list of libraries with a 200 OK status
-                Page<LibraryDTO> libs = convertListDTOToPage(libraries.stream()
-                                .map(library -> new LibraryDTO(library.getId(), library.getName(),
-                                                library.getDistance()))
-                                .collect(Collectors.toList()), PageRequest.of(page, size, Sort.by(sort)));
+                return new ResponseEntity<>(libraries, HttpStatus.OK);
+        }
+        // #endregion
+
+        // #region GET all Libraries by cursor
+        @GetMapping("/scroll")
+        @Operation(summary = "Get all Libraries by cursor", description = "Retrieves a slice of the optionally sorted list of libraries. Pass the returned cursor to get the next slice, deep slices cost the same as the first one.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Successfully retrieved libraries"),
+                        @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
+                        @ApiResponse(responseCode = "404", description = "No libraries in Database")
+        })
+        public ResponseEntity<CursorPage<LibraryDTO>> scrollLibraries(
+                        @Parameter(description = "Cursor returned with the previous slice") @RequestParam(required = false) String cursor,
+                        @Parameter(description = "Slice size") @RequestParam(defaultValue = "20") int size,
+                        @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort,
+                        @Parameter(description = "Also count all libraries") @RequestParam(defaultValue = "false") boolean count) {
+                CursorPage<Library> libraries = repository.scrollAll(cursor, size, Sort.by(sort), count);
+                if (libraries.isEmpty()) {
+                        // If no libraries are found, return a 404 Not Found
+                        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+
+                // Return the slice of libraries with a 200 OK status
+                CursorPage<LibraryDTO> libs = libraries.map(
+                                library -> new LibraryDTO(library.getId(), library.getName(), library.getDistance()));
                 return new ResponseEntity<>(libs, HttpStatus.OK);
         }
         // #endregion
@@ -90,12 +154,37 @@ public class LibraryController {
                 if (b == null) {
                         throw new LibraryException("Can't convert input to Library");
                 }
-                Library savedLibrary = repository.save(b);
+                Library savedLibrary = inventoryStore.save(b);
                 // Return the saved library with a 201 status code
                 return new ResponseEntity<>(savedLibrary, HttpStatus.CREATED);
         }
         // #endregion
 
+        // #region POST import Libraries
+        @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+        @Operation(summary = "Import Libraries", description = "Imports newline-delimited JSON libraries including their inventories in bulk. Libraries with an existing id are updated, invalid records are reported by line number.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Import finished, see the result for failed records"),
+                        @ApiResponse(responseCode = "500", description = "Internal server error")
+        })
+        public ResponseEntity<BulkImportResult> importLibraries(
+                        @Parameter(description = "One JSON library per line") InputStream body) throws IOException {
+                return new ResponseEntity<>(bulkImportService.importLibraries(body), HttpStatus.OK);
+        }
+        // #endregion
+
+        // #region GET export Libraries
+        @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+        @Operation(summary = "Export all Libraries", description = "Streams all libraries including their inventories as newline-delimited JSON in a single response.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Successfully exported libraries")
+        })
+        public void exportLibraries(HttpServletResponse response) throws IOException {
+                response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+                exportService.exportLibraries(response.getOutputStream());
+        }
+        // #endregion
+
         // #region GET Library by ID
         @GetMapping("/{id}")
         @Operation(summary = "Get Library by ID", description = "Retrieves a library")
@@ -106,7 +195,9 @@ public class LibraryController {
         })
         public Library findById(
                         @Parameter(description = "The internal id of the library") @RequestParam @PathVariable String id) {
-                return repository.findById(id).orElseThrow(() -> new LibraryException("Unknown ID"));
+                return repository.findById(id)
+                                .map(inventoryStore::loadInventory)
+                                .orElseThrow(() -> new LibraryException("Unknown ID"));
         }
         // #endregion
 
@@ -117,37 +208,97 @@ public class LibraryController {
                         @ApiResponse(responseCode = "200", description = "Successfully updated library"),
                         @ApiResponse(responseCode = "400", description = "Invalid library data provided"),
                         @ApiResponse(responseCode = "204", description = "No Content"),
-                        @ApiResponse(responseCode = "404", description = "Library does not exist")
+                        @ApiResponse(responseCode = "404", description = "Library does not exist"),
+                        @ApiResponse(responseCode = "409", description = "Library was changed concurrently"),
+                        @ApiResponse(responseCode = "428", description = "Version missing")
         })
         public ResponseEntity<Library> updateLibrary(
                         @Parameter(description = "The id of the library to edid") @PathVariable("id") String id,
-                        @Parameter(description = "The library to be added to the repository") @Valid @RequestBody Library library) {
-                // Check if the library exists in the database
-                Optional<Library> existingLibraryOptional = repository.findById(id);
-
-                if (!existingLibraryOptional.isPresent()) {
-                        return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if the library doesn't exist
-                }
+                        @Parameter(description = "The library to be added to the repository, with the version last read to detect concurrent edits, 0 if it was read without version") @Valid @RequestBody Library library) {
                 Library b = library;
                 if (b == null) {
                         throw new LibraryException("Can't convert input to Library");
                 }
+                // Without the version a concurrent edit would be overwritten silently
+                if (b.getVersion() == null) {
+                        return new ResponseEntity<>(HttpStatus.PRECONDITION_REQUIRED);
+                }
 
-                // Get the existing library
-                Library existingLibrary = existingLibraryOptional.get();
-
-                // Update the fields of the existing library
-                existingLibrary.setName(b.getName());
-                existingLibrary.setIsbnList(b.getIsbnList());
-
-                // Save the updated library
-                Library updatedLibrary = repository.save(existingLibrary);
+                // Update the fields of the existing library in a single round trip
+                Library updatedLibrary = inventoryStore.update(id, b.getVersion(), b);
+                if (updatedLibrary == null) {
+                        return notFoundOrConflict(id);
+                }
 
                 // Return the updated library with a 200 OK status code
                 return new ResponseEntity<>(updatedLibrary, HttpStatus.OK);
         }
         // #endregion
 
+        // #region POST add Books to Library inventory
+        @PostMapping("/{id}/isbns")
+        @Operation(summary = "Add Books to a Library", description = "Adds ISBNs to the inventory of a library without rewriting the whole inventory.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Successfully added books"),
+                        @ApiResponse(responseCode = "400", description = "Invalid ISBNs provided"),
+                        @ApiResponse(responseCode = "404", description = "Library does not exist")
+        })
+        public ResponseEntity<Void> addLibraryIsbns(
+                        @Parameter(description = "The id of the library") @PathVariable("id") String id,
+                        @Parameter(description = "The ISBNs to add") @RequestBody List<String> isbns) {
+                checkInventoryIsbns(isbns);
+                if (!inventoryStore.addIsbns(id, isbns)) {
+                        return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if the library doesn't exist
+                }
+                return new ResponseEntity<>(HttpStatus.OK);
+        }
+
+        @PutMapping("/{id}/isbns/{isbn}")
+        @Operation(summary = "Add a Book to a Library", description = "Adds a single ISBN to the inventory of a library without rewriting the whole inventory.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Successfully added book"),
+                        @ApiResponse(responseCode = "400", description = "Invalid ISBN provided"),
+                        @ApiResponse(responseCode = "404", description = "Library does not exist")
+        })
+        public ResponseEntity<Void> addLibraryIsbn(
+                        @Parameter(description = "The id of the library") @PathVariable("id") String id,
+                        @Parameter(description = "The ISBN to add") @PathVariable("isbn") String isbn) {
+                return addLibraryIsbns(id, List.of(isbn));
+        }
+        // #endregion
+
+        // #region POST remove Books from Library inventory
+        @PostMapping("/{id}/isbns/remove")
+        @Operation(summary = "Remove Books from a Library", description = "Removes ISBNs from the inventory of a library without rewriting the whole inventory.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Successfully removed books"),
+                        @ApiResponse(responseCode = "400", description = "Invalid ISBNs provided"),
+                        @ApiResponse(responseCode = "404", description = "Library does not exist")
+        })
+        public ResponseEntity<Void> removeLibraryIsbns(
+                        @Parameter(description = "The id of the library") @PathVariable("id") String id,
+                        @Parameter(description = "The ISBNs to remove") @RequestBody List<String> isbns) {
+                checkInventoryIsbns(isbns);
+                if (!inventoryStore.removeIsbns(id, isbns)) {
+                        return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if the library doesn't exist
+                }
+                return new ResponseEntity<>(HttpStatus.OK);
+        }
+
+        @DeleteMapping("/{id}/isbns/{isbn}")
+        @Operation(summary = "Remove a Book from a Library", description = "Removes a single ISBN from the inventory of a library without rewriting the whole inventory.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Successfully removed book"),
+                        @ApiResponse(responseCode = "400", description = "Invalid ISBN provided"),
+                        @ApiResponse(responseCode = "404", description = "Library does not exist")
+        })
+        public ResponseEntity<Void> removeLibraryIsbn(
+                        @Parameter(description = "The id of the library") @PathVariable("id") String id,
+                        @Parameter(description = "The ISBN to remove") @PathVariable("isbn") String isbn) {
+                return removeLibraryIsbns(id, List.of(isbn));
+        }
+        // #endregion
+
         // #region DELETE DELETE Library by ID
         @DeleteMapping("/{id}")
         @Operation(summary = "Delete a Library", description = "Deletes an existing library.")
@@ -155,31 +306,34 @@ public class LibraryController {
                         @ApiResponse(responseCode = "200", description = "Successfully deleted library"),
                         @ApiResponse(responseCode = "400", description = "Invalid library data provided"),
                         @ApiResponse(responseCode = "204", description = "No Content"),
-                        @ApiResponse(responseCode = "404", description = "Library does not exist")
+                        @ApiResponse(responseCode = "404", description = "Library does not exist"),
+                        @ApiResponse(responseCode = "409", description = "Library was changed concurrently"),
+                        @ApiResponse(responseCode = "428", description = "Version missing")
         })
         public ResponseEntity<Library> deleteLibrary(
-                        @Parameter(description = "The id of the library to delete") @PathVariable("id") String id) {
-                // Check if the library exists in the database
-                Optional<Library> existingLibraryOptional = repository.findById(id);
-
-                if (!existingLibraryOptional.isPresent()) {
-                        return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Return 404 if the library doesn't exist
+                        @Parameter(description = "The id of the library to delete") @PathVariable("id") String id,
+                        @Parameter(description = "The version last read, detects concurrent edits, 0 if it was read without version") @RequestParam(required = false) Long version) {
+                if (version == null) {
+                        return new ResponseEntity<>(HttpStatus.PRECONDITION_REQUIRED);
+                }
+                // Delete the library and its inventory in a single round trip
+                if (inventoryStore.delete(id, version) == null) {
+                        return notFoundOrConflict(id);
                 }
-
-                // Get the existing library
-                Library existingLibrary = existingLibraryOptional.get();
-
-                // Delete the updated library
-                repository.delete(existingLibrary);
 
                 // Return the status code
                 return new ResponseEntity<>(HttpStatus.OK);
         }
+
+        private <T> ResponseEntity<T> notFoundOrConflict(String id) {
+                // Only reached when nothing matched, so the extra lookup is off the fast path
+                return new ResponseEntity<>(repository.existsById(id) ? HttpStatus.CONFLICT : HttpStatus.NOT_FOUND);
+        }
         // #endregion
 
         // #region GET find libraries by Name containing
         @GetMapping("/searchName")
-        @Operation(summary = "Find Libraries by name", description = "Retrieves a paginated and optionally sorted list of libraries with matching name.")
+        @Operation(summary = "Find Libraries by name", description = "Retrieves a paginated and optionally sorted list of libraries with matching name. With lat and lon the result is ordered by distance instead.")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Successfully retrieved libraries"),
                         @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
@@ -189,10 +343,18 @@ public class LibraryController {
                         @Parameter(description = "Name segment of the Library") @RequestParam("name") String name,
                         @Parameter(description = "Page number") @RequestParam(defaultValue = "0") int page,
                         @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
-                        @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort) {
+                        @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort,
+                        @Parameter(description = "Latitude of the caller, orders the result by distance") @RequestParam(required = false) Double lat,
+                        @Parameter(description = "Longitude of the caller, orders the result by distance") @RequestParam(required = false) Double lon,
+                        @Parameter(description = "Maximum distance in kilometers, requires lat and lon") @RequestParam(required = false) Double radius) {
+                GeoJsonPoint location = toLocation(lat, lon, radius);
                 // Retrieve libraries whose name contains the search string (case-insensitive)
-                Page<Library> libraries = repository.findByNameContainingIgnoreCase(name,
-                                PageRequest.of(page, size, Sort.by(sort)));
+                Page<LibraryDTO> libraries = location != null
+                                ? repository.findNear(location, radius,
+                                                Criteria.where("name").regex(Pattern.quote(name), "i"),
+                                                PageRequest.of(page, size))
+                                : repository.findProjectedByNameContainingIgnoreCase(name,
+                                                PageRequest.of(page, size, Sort.by(sort)));
 
                 if (libraries.isEmpty()) {
                         // If no libraries are found, return a 404 Not Found
@@ -200,17 +362,41 @@ public class LibraryController {
                 }
 
                 // Return the list of libraries with a 200 OK status
-                Page<LibraryDTO> libs = convertListDTOToPage(libraries.stream()
-                                .map(library -> new LibraryDTO(library.getId(), library.getName(), library
-                                                .getDistance()))
-                                .collect(Collectors.toList()), PageRequest.of(page, size, Sort.by(sort)));
+                return new ResponseEntity<>(libraries, HttpStatus.OK);
+        }
+        // #endregion
+
+        // #region GET find libraries by Name containing by cursor
+        @GetMapping("/searchName/scroll")
+        @Operation(summary = "Find Libraries by name by cursor", description = "Retrieves a slice of the optionally sorted list of libraries with matching name. Pass the returned cursor to get the next slice.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Successfully retrieved libraries"),
+                        @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
+                        @ApiResponse(responseCode = "404", description = "Libraries not found")
+        })
+        public ResponseEntity<CursorPage<LibraryDTO>> scrollLibrariesByTitle(
+                        @Parameter(description = "Name segment of the Library") @RequestParam("name") String name,
+                        @Parameter(description = "Cursor returned with the previous slice") @RequestParam(required = false) String cursor,
+                        @Parameter(description = "Slice size") @RequestParam(defaultValue = "20") int size,
+                        @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort,
+                        @Parameter(description = "Also count all matching libraries") @RequestParam(defaultValue = "false") boolean count) {
+                CursorPage<Library> libraries = repository.scrollByNameContaining(name, cursor, size, Sort.by(sort),
+                                count);
+                if (libraries.isEmpty()) {
+                        // If no libraries are found, return a 404 Not Found
+                        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+
+                // Return the slice of libraries with a 200 OK status
+                CursorPage<LibraryDTO> libs = libraries.map(
+                                library -> new LibraryDTO(library.getId(), library.getName(), library.getDistance()));
                 return new ResponseEntity<>(libs, HttpStatus.OK);
         }
         // #endregion
 
         // #region GET find libraries by ISBN in Stock
         @GetMapping("/searchHasISBN")
-        @Operation(summary = "Find Libraries stocking a Book with ISBN", description = "Retrieves a paginated and optionally sorted list of libraries that stock the book. The result is ordered by distance.")
+        @Operation(summary = "Find Libraries stocking a Book with ISBN", description = "Retrieves a paginated list of libraries that stock the book. The result is ordered by distance, with lat and lon by the real distance from the caller.")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Successfully retrieved libraries"),
                         @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
@@ -219,9 +405,33 @@ public class LibraryController {
         public ResponseEntity<Page<LibraryDTO>> searchLibrariesHasISBN(
                         @Parameter(description = "ISBN of desired Book") @RequestParam("isbn") String isbn,
                         @Parameter(description = "Page number") @RequestParam(defaultValue = "0") int page,
-                        @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size) {
-                // Retrieve libraries whose name contains the search string (case-insensitive)
-                Page<Library> libraries = repository.findByIsbnListContaining(
+                        @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
+                        @Parameter(description = "Latitude of the caller, orders the result by distance") @RequestParam(required = false) Double lat,
+                        @Parameter(description = "Longitude of the caller, orders the result by distance") @RequestParam(required = false) Double lon,
+                        @Parameter(description = "Maximum distance in kilometers, requires lat and lon") @RequestParam(required = false) Double radius) {
+                GeoJsonPoint location = toLocation(lat, lon, radius);
+                if (location != null) {
+                        // Rank by the real distance inside the database
+                        Page<LibraryDTO> nearest = inventoryStore.findHoldingNear(isbn, location, radius,
+                                        PageRequest.of(page, size));
+                        if (nearest.isEmpty()) {
+                                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                        }
+                        return new ResponseEntity<>(nearest, HttpStatus.OK);
+                }
+
+                // Answer from the in-memory inventory index once it is built
+                if (inventoryIndex.isReady()) {
+                        List<LibraryDTO> holders = inventoryIndex.findHolding(isbn);
+                        if (holders.isEmpty()) {
+                                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                        }
+                        return new ResponseEntity<>(convertListDTOToPage(holders,
+                                        PageRequest.of(page, size, Sort.by(Sort.Order.asc("distance")))), HttpStatus.OK);
+                }
+
+                // Retrieve libraries whose inventory contains the ISBN
+                Page<LibraryDTO> libraries = inventoryStore.findHolding(
                                 isbn,
                                 PageRequest.of(page, size, Sort.by(Sort.Order.asc("distance"))));
 
@@ -231,12 +441,40 @@ public class LibraryController {
                 }
 
                 // Return the list of libraries with a 200 OK status
-                Page<LibraryDTO> libs = convertListDTOToPage(libraries.stream()
-                                .map(library -> new LibraryDTO(library.getId(), library.getName(), library
-                                                .getDistance()))
-                                .collect(Collectors.toList()),
-                                PageRequest.of(page, size, Sort.by(Sort.Order.asc("distance"))));
-                return new ResponseEntity<>(libs, HttpStatus.OK);
+                return new ResponseEntity<>(libraries, HttpStatus.OK);
+        }
+        // #endregion
+
+        // #region GET find libraries by reading list
+        @GetMapping("/searchHasISBNs")
+        @Operation(summary = "Find Libraries stocking Books of a reading list", description = "Retrieves a paginated list of libraries that stock at least the given number of books of the list. The result is ordered by the number of stocked books, then by distance.")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Successfully retrieved libraries"),
+                        @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
+                        @ApiResponse(responseCode = "404", description = "Libraries not found"),
+                        @ApiResponse(responseCode = "503", description = "Inventory index is not built yet")
+        })
+        public ResponseEntity<Page<LibraryMatchDTO>> searchLibrariesHasISBNs(
+                        @Parameter(description = "ISBNs of the desired Books") @RequestParam("isbn") List<String> isbns,
+                        @Parameter(description = "Minimum number of the Books a Library has to stock, defaults to all") @RequestParam(required = false) Integer minMatches,
+                        @Parameter(description = "Page number") @RequestParam(defaultValue = "0") int page,
+                        @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size) {
+                if (isbns.size() > readingListMaxSize) {
+                        throw new LibraryException("At most " + readingListMaxSize + " ISBNs can be requested at once");
+                }
+                if (!inventoryIndex.isReady()) {
+                        return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+                }
+
+                List<LibraryMatchDTO> matches = inventoryIndex.findHoldingMost(isbns,
+                                minMatches != null ? minMatches : isbns.size());
+                if (matches.isEmpty()) {
+                        // If no libraries are found, return a 404 Not Found
+                        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+
+                // Return the list of libraries with a 200 OK status
+                return new ResponseEntity<>(convertListDTOToPage(matches, PageRequest.of(page, size)), HttpStatus.OK);
         }
         // #endregion
 
@@ -269,6 +507,13 @@ public class LibraryController {
                                 HttpStatus.BAD_REQUEST);
         }
 
+        @ExceptionHandler({ OptimisticLockingFailureException.class, DuplicateKeyException.class })
+        @ResponseStatus(HttpStatus.CONFLICT)
+        public ResponseEntity<ErrorResponse> onConflict(RuntimeException ex) {
+                return new ResponseEntity<>(ErrorResponse.create(ex, HttpStatus.CONFLICT, ex.getMessage()),
+                                HttpStatus.CONFLICT);
+        }
+
         @ExceptionHandler(com.mongodb.MongoWriteException.class)
         @ResponseStatus(HttpStatus.BAD_REQUEST)
         public ResponseEntity<ErrorResponse> onMongoWriteException(com.mongodb.MongoWriteException ex) {
@@ -290,13 +535,42 @@ public class LibraryController {
                 return new PageImpl<>(pageContent, pageable, libraryList.size());
         }
 
-        public Page<LibraryDTO> convertListDTOToPage(List<LibraryDTO> libraryList, Pageable pageable) {
+        private void checkInventoryIsbns(List<String> isbns) {
+                if (isbns.size() > inventoryMaxIsbnsPerRequest) {
+                        throw new LibraryException("At most " + inventoryMaxIsbnsPerRequest + " ISBNs can be changed at once");
+                }
+                for (String isbn : isbns) {
+                        // Same format as the ISBN of a book
+                        if (isbn == null || !ISBN.matcher(isbn).matches()) {
+                                throw new LibraryException("Invalid ISBN: " + isbn);
+                        }
+                }
+        }
+
+        private static GeoJsonPoint toLocation(Double lat, Double lon, Double radius) {
+                if (lat == null && lon == null) {
+                        if (radius != null) {
+                                throw new LibraryException("A radius requires lat and lon");
+                        }
+                        return null;
+                }
+                if (lat == null || lon == null) {
+                        throw new LibraryException("lat and lon have to be given together");
+                }
+                if (lat < -90 || lat > 90 || lon < -180 || lon > 180 || (radius != null && radius <= 0)) {
+                        throw new LibraryException("Invalid location or radius");
+                }
+                // GeoJSON points are (longitude, latitude)
+                return new GeoJsonPoint(lon, lat);
+        }
+
+        public <T extends LibraryDTO> Page<T> convertListDTOToPage(List<T> libraryList, Pageable pageable) {
                 // Calculate the start and end index based on the page size and page number
-                int start = (int) pageable.getOffset();
+                int start = (int) Math.min(pageable.getOffset(), libraryList.size());
                 int end = Math.min((start + pageable.getPageSize()), libraryList.size());
 
                 // Sublist to simulate the page
-                List<LibraryDTO> pageContent = libraryList.subList(start, end);
+                List<T> pageContent = libraryList.subList(start, end);
 
                 // Return a Page with content and pagination details
                 return new PageImpl<>(pageContent, pageable, libraryList.size());
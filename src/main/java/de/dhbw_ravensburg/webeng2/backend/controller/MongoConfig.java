@@ -4,12 +4,18 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.MongoDatabaseFactory;
 import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.geo.GeoJsonModule;
 import org.springframework.data.mongodb.core.mapping.event.ValidatingMongoEventListener;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
+import com.fasterxml.jackson.databind.Module;
+
 @Configuration
 @EnableMongoRepositories("de.dhbw_ravensburg.webeng2.backend.repos")
+// Each variant only picks up the repository interfaces of its own kind
+@EnableReactiveMongoRepositories("de.dhbw_ravensburg.webeng2.backend.repos")
 public class MongoConfig {
 
     @Bean
@@ -18,6 +24,12 @@ public class MongoConfig {
         return new ValidatingMongoEventListener(factory);
     }
 
+    @Bean
+    public Module geoJsonModule() {
+        // Reads and writes GeoJsonPoint as plain GeoJSON in request and response bodies
+        return GeoJsonModule.geoJsonModule();
+    }
+
     @Bean
     public MongoTransactionManager transactionManager(final MongoDatabaseFactory databaseFactory) {
         return new MongoTransactionManager(databaseFactory);
@@ -0,0 +1,204 @@
+package de.dhbw_ravensburg.webeng2.backend.controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Book;
+import de.dhbw_ravensburg.webeng2.backend.model.BookInfo;
+import de.dhbw_ravensburg.webeng2.backend.repos.ReactiveBookRepository;
+import de.dhbw_ravensburg.webeng2.backend.service.BookSearchIndex;
+import de.dhbw_ravensburg.webeng2.backend.service.ReactiveBookInfoService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of the read-heavy endpoints of {@link BookController}.
+ * Spring MVC releases the request thread as soon as the handler returns the Mono and writes the
+ * response once it completes. Until then, Mongo, Redis and the external APIs are waited for on the
+ * event loops of their non-blocking clients, not on request threads.
+ */
+@RestController
+@CrossOrigin(origins = "*", allowedHeaders = "*", methods = { RequestMethod.GET })
+@RequestMapping("/api/reactive/books")
+public class ReactiveBookController {
+    @Autowired
+    private ReactiveBookRepository repository;
+
+    @Autowired
+    private ReactiveBookInfoService bookInfoService;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Value("${bookinfo.batch.max-size:100}")
+    private int batchMaxSize;
+
+    // #region GET find books by Title containing
+    @GetMapping("/searchTitle")
+    @Operation(summary = "Find Books by title", description = "Retrieves a paginated and optionally sorted list of books with matching title.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
+            @ApiResponse(responseCode = "404", description = "Books not found")
+    })
+    public Mono<ResponseEntity<Page<Book>>> searchBooksByTitle(
+            @Parameter(description = "Title segment of the Book") @RequestParam("title") String title,
+            @Parameter(description = "Page number") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Sort fields") @RequestParam(defaultValue = "") String[] sort) {
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(sort));
+
+        // Load the page and count all matches concurrently
+        return Mono.zip(repository.findByTitleContainingIgnoreCase(title, pageRequest).collectList(),
+                repository.countByTitleContainingIgnoreCase(title))
+                .map(result -> result.getT1().isEmpty()
+                        // If no books are found, return a 404 Not Found
+                        ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+                        : new ResponseEntity<>(new PageImpl<>(result.getT1(), pageRequest, result.getT2()), HttpStatus.OK));
+    }
+    // #endregion
+
+    // #region GET find books by ISBN
+    @GetMapping("/searchIsbn")
+    @Operation(summary = "Find Books by ISBN", description = "Retrieves a Book by ISBN.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved book"),
+            @ApiResponse(responseCode = "404", description = "Book not found")
+    })
+    public Mono<ResponseEntity<Book>> searchBookByIsbn(
+            @Parameter(description = "ISBN of the Book") @RequestParam("isbn") String isbn) {
+        return repository.findByIsbn(isbn)
+                .map(book -> new ResponseEntity<>(book, HttpStatus.OK))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+    // #endregion
+
+    // #region GET full text search for books
+    @GetMapping("/fulltext")
+    @Operation(summary = "Full text search for Books", description = "Retrieves a paginated list of books ordered by relevance. Every word of the text has to match a word of the title, authors or subjects, the last characters may be left out.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved books"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided"),
+            @ApiResponse(responseCode = "404", description = "Books not found")
+    })
+    public Mono<ResponseEntity<Page<Book>>> fullTextSearchBooks(
+            @Parameter(description = "Words to search for") @RequestParam("text") String text,
+            @Parameter(description = "Page number") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size) {
+        // The search index lives in memory, only the books of the page are loaded from Mongo
+        BookSearchIndex.SearchResult result = searchIndex.search(text, page, size);
+
+        return repository.findAllById(result.ids())
+                .collectMap(Book::getId)
+                .map(booksById -> {
+                    // Keep the relevance order
+                    List<Book> content = result.ids().stream().map(booksById::get).filter(Objects::nonNull).toList();
+                    if (content.isEmpty()) {
+                        // If no books are found, return a 404 Not Found
+                        return new ResponseEntity<Page<Book>>(HttpStatus.NOT_FOUND);
+                    }
+                    return new ResponseEntity<Page<Book>>(
+                            new PageImpl<>(content, PageRequest.of(page, size), result.total()), HttpStatus.OK);
+                });
+    }
+    // #endregion
+
+    // #region GET book info by ID
+    @GetMapping("/{id}/info")
+    @Operation(summary = "Get Book Info", description = "Retrieves additional information for a specific book by its ID from google and openbook api")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved book information"),
+            @ApiResponse(responseCode = "404", description = "Book not found"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public Mono<BookInfo> getBookInfo(
+            @Parameter(description = "The ID of the book to get information for") @PathVariable String id) {
+        return repository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new BookException("Book not found")))
+                .flatMap(book -> bookInfoService.getBookInfo(book.getIsbn()));
+    }
+    // #endregion
+
+    // #region GET book info for many books
+    @GetMapping("/batchinfo")
+    @Operation(summary = "Get Book Info for many Books", description = "Retrieves additional information for several books at once, identified by their IDs and/or ISBNs")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved book information"),
+            @ApiResponse(responseCode = "400", description = "Too many books requested"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public Mono<Map<String, BookInfo>> getBatchBookInfo(
+            @Parameter(description = "The IDs of the books to get information for") @RequestParam(name = "id", defaultValue = "") List<String> ids,
+            @Parameter(description = "The ISBNs of the books to get information for") @RequestParam(name = "isbn", defaultValue = "") List<String> isbns) {
+        if (ids.size() + isbns.size() > batchMaxSize) {
+            throw new BookException("At most " + batchMaxSize + " books can be requested at once");
+        }
+
+        // Resolve all IDs with a single query
+        return repository.findAllById(ids)
+                .collect(HashMap<String, String>::new, (isbnById, book) -> isbnById.put(book.getId(), book.getIsbn()))
+                .flatMap(isbnById -> {
+                    List<String> allIsbns = new ArrayList<>(isbnById.values());
+                    allIsbns.addAll(isbns);
+                    return bookInfoService.getBookInfos(allIsbns).map(infos -> {
+                        // Key the result by what was requested, in request order
+                        Map<String, BookInfo> result = new LinkedHashMap<>();
+                        for (String id : ids) {
+                            String isbn = isbnById.get(id);
+                            if (isbn != null && infos.containsKey(isbn)) {
+                                result.put(id, infos.get(isbn));
+                            }
+                        }
+                        for (String isbn : isbns) {
+                            if (infos.containsKey(isbn)) {
+                                result.put(isbn, infos.get(isbn));
+                            }
+                        }
+                        return result;
+                    });
+                });
+    }
+    // #endregion
+
+    // #region Exceptions
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ErrorResponse> onIllegalArgumentException(IllegalArgumentException ex) {
+        return new ResponseEntity<>(ErrorResponse.create(ex, HttpStatus.BAD_REQUEST, ex.getMessage()),
+                HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(BookException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ErrorResponse> onBookException(BookException ex) {
+        return new ResponseEntity<>(ErrorResponse.create(ex, HttpStatus.BAD_REQUEST, ex.getMessage()),
+                HttpStatus.BAD_REQUEST);
+    }
+    // #endregion
+}
@@ -8,10 +8,14 @@ import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.Indexed;
 
 @Document(collection = "books")
 public class Book {
+    // ISBN-10 or ISBN-13, digits only
+    public static final String ISBN_PATTERN = "^([0-9]{3})?[0-9]{10}$";
+
     @Id
     private String id;
 
@@ -22,9 +26,12 @@ public class Book {
     @NotNull(message = "ISBN cannot be null")
     @Indexed(unique = true)
     @Size(min = 10, max = 13, message = "ISBN should be between 10 and 13 characters")
-    @Pattern(regexp = "^([0-9]{3})?[0-9]{10}$")
+    @Pattern(regexp = ISBN_PATTERN)
     private String isbn;
 
+    @Version
+    private Long version;
+
     // Constructors
     public Book(String isbn, String title) {
         this.isbn = isbn;
@@ -52,6 +59,14 @@ public class Book {
         this.isbn = isbn;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return String.format(
@@ -2,6 +2,10 @@ package de.dhbw_ravensburg.webeng2.backend.model;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.redis.core.RedisHash;
+import org.springframework.data.redis.core.TimeToLive;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.List;
@@ -30,6 +34,11 @@ public class BookInfo {
     private String firstSentence;
     private Map<String, List<String>> identifiers;
     private Map<String, String> coverUrls;
+    @TimeToLive
+    @JsonIgnore
+    private Long timeToLive;
+    @JsonIgnore
+    private long fetchedAt;
 
     public BookInfo(String isbn) {
         this.isbn = isbn;
@@ -187,4 +196,20 @@ public class BookInfo {
     public void setCoverUrls(Map<String, String> coverUrls) {
         this.coverUrls = coverUrls;
     }
+
+    public Long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(Long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public void setFetchedAt(long fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package de.dhbw_ravensburg.webeng2.backend.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Outcome of a bulk import, failed records are reported by their line number")
+public class BulkImportResult {
+    private long received;
+    private long imported;
+    private long failed;
+    @Schema(description = "The first failed records, the list is capped while failed counts all of them")
+    private List<Failure> failures = new ArrayList<>();
+
+    public record Failure(long line, String message) {
+    }
+
+    public void addReceived() {
+        received++;
+    }
+
+    public void addImported(long count) {
+        imported += count;
+    }
+
+    public void addFailure(long line, String message, int maxReported) {
+        failed++;
+        if (failures.size() < maxReported) {
+            failures.add(new Failure(line, message));
+        }
+    }
+
+    // Getters
+    public long getReceived() {
+        return received;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+}
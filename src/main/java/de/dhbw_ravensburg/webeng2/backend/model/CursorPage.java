@@ -0,0 +1,54 @@
+package de.dhbw_ravensburg.webeng2.backend.model;
+
+import java.util.List;
+import java.util.function.Function;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "A slice of a result set addressed by an opaque continuation token instead of a page number")
+public class CursorPage<T> {
+    private List<T> content;
+    @Schema(description = "Token to pass as cursor to get the next slice, null on the last slice")
+    private String nextCursor;
+    @Schema(description = "Total number of matching elements, only set when requested")
+    private Long totalElements;
+
+    public CursorPage(List<T> content, String nextCursor, Long totalElements) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.totalElements = totalElements;
+    }
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), nextCursor, totalElements);
+    }
+
+    // Getters and Setters
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+
+    public boolean isEmpty() {
+        return content.isEmpty();
+    }
+}
@@ -7,6 +7,10 @@ import jakarta.validation.constraints.NotNull;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 
 @Document(collection = "libraries")
 public class Library {
@@ -17,13 +21,17 @@ public class Library {
     @NotEmpty(message = "Name cannot be empty")
     private String name;
 
-    @NotNull(message = "Distance cannot be null")
-    @NotEmpty(message = "Distance cannot be empty")
     private float distance;
 
     @NotNull(message = "Inventory cannot be null")
     private List<String> isbnList;
 
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint location;
+
+    @Version
+    private Long version;
+
     // Constructors
     public Library(String name, List<String> isbnList, float distance) {
         this.name = name;
@@ -67,6 +75,22 @@ public class Library {
         this.isbnList = isbnList;
     }
 
+    public GeoJsonPoint getLocation() {
+        return location;
+    }
+
+    public void setLocation(GeoJsonPoint location) {
+        this.location = location;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Library{" +
@@ -0,0 +1,56 @@
+package de.dhbw_ravensburg.webeng2.backend.model;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A fixed-size slice of the inventory of a library, used by the bucketed inventory storage.
+ */
+@Document(collection = "library_inventory")
+public class LibraryInventoryBucket {
+    @Id
+    private String id;
+
+    @Indexed
+    private String libraryId;
+
+    @Indexed
+    private List<String> isbns;
+
+    // Constructors
+    public LibraryInventoryBucket(String libraryId, List<String> isbns) {
+        this.libraryId = libraryId;
+        this.isbns = isbns;
+    }
+
+    public LibraryInventoryBucket() {
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getLibraryId() {
+        return libraryId;
+    }
+
+    public void setLibraryId(String libraryId) {
+        this.libraryId = libraryId;
+    }
+
+    public List<String> getIsbns() {
+        return isbns;
+    }
+
+    public void setIsbns(List<String> isbns) {
+        this.isbns = isbns;
+    }
+}
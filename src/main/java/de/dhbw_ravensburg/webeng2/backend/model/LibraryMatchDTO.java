@@ -0,0 +1,31 @@
+package de.dhbw_ravensburg.webeng2.backend.model;
+
+import java.util.List;
+
+public class LibraryMatchDTO extends LibraryDTO {
+    private int matchCount;
+    private List<String> matchedIsbns;
+
+    public LibraryMatchDTO(String id, String name, float distance, List<String> matchedIsbns) {
+        super(id, name, distance);
+        this.matchCount = matchedIsbns.size();
+        this.matchedIsbns = matchedIsbns;
+    }
+
+    // Getters and Setters
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    public void setMatchCount(int matchCount) {
+        this.matchCount = matchCount;
+    }
+
+    public List<String> getMatchedIsbns() {
+        return matchedIsbns;
+    }
+
+    public void setMatchedIsbns(List<String> matchedIsbns) {
+        this.matchedIsbns = matchedIsbns;
+    }
+}
@@ -11,10 +11,12 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
 @RepositoryRestResource(collectionResourceRel = "books", path = "books", exported = false)
-public interface BookRepository extends MongoRepository<Book, String> {
+public interface BookRepository extends MongoRepository<Book, String>, BookRepositoryCustom {
 
   Page<Book> findByTitleContainingIgnoreCase(String title, Pageable pageable);
 
   Optional<Book> findByIsbn(String isbn);
 
+  boolean existsByIsbn(String isbn);
+
 }
\ No newline at end of file
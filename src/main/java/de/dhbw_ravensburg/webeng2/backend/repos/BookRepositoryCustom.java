@@ -0,0 +1,51 @@
+package de.dhbw_ravensburg.webeng2.backend.repos;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Book;
+import de.dhbw_ravensburg.webeng2.backend.model.CursorPage;
+
+import java.util.Optional;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+public interface BookRepositoryCustom {
+
+  /**
+   * Picks a uniformly random book using a $sample stage, without skipping through the collection.
+   */
+  Optional<Book> findRandom();
+
+  /**
+   * Finds books whose ISBN equals the text or whose title contains it (case-insensitive).
+   * Matching, de-duplication, pagination and the total count happen in a single aggregation.
+   */
+  Page<Book> searchByIsbnOrTitle(String text, Pageable pageable);
+
+  /**
+   * Keyset paginated variant of findAll, see {@link CursorSupport}.
+   */
+  CursorPage<Book> scrollAll(String cursor, int size, Sort sort, boolean withCount);
+
+  /**
+   * Keyset paginated variant of findByTitleContainingIgnoreCase, see {@link CursorSupport}.
+   */
+  CursorPage<Book> scrollByTitleContaining(String title, String cursor, int size, Sort sort, boolean withCount);
+
+  /**
+   * Updates title and ISBN of a book and increments its version in a single findAndModify.
+   *
+   * @param version The version the caller has seen, see {@link VersionSupport#byIdAndVersion}
+   * @return The updated book, null if no book with the id (and version) exists
+   */
+  Book updateVersioned(String id, long version, Book changes);
+
+  /**
+   * Deletes a book in a single findAndRemove.
+   *
+   * @param version The version the caller has seen, see {@link VersionSupport#byIdAndVersion}
+   * @return The deleted book, null if no book with the id (and version) exists
+   */
+  Book deleteVersioned(String id, long version);
+
+}
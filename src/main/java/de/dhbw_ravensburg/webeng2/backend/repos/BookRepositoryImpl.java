@@ -0,0 +1,90 @@
+package de.dhbw_ravensburg.webeng2.backend.repos;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Book;
+import de.dhbw_ravensburg.webeng2.backend.model.CursorPage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Override
+  public Optional<Book> findRandom() {
+    Aggregation aggregation = Aggregation.newAggregation(Aggregation.sample(1));
+    return Optional.ofNullable(mongoTemplate.aggregate(aggregation, Book.class, Book.class).getUniqueMappedResult());
+  }
+
+  @Override
+  public Book updateVersioned(String id, long version, Book changes) {
+    Update update = new Update()
+        .set("title", changes.getTitle())
+        .set("isbn", changes.getIsbn())
+        .inc("version", 1);
+    return mongoTemplate.findAndModify(VersionSupport.byIdAndVersion(id, version), update,
+        FindAndModifyOptions.options().returnNew(true), Book.class);
+  }
+
+  @Override
+  public Book deleteVersioned(String id, long version) {
+    return mongoTemplate.findAndRemove(VersionSupport.byIdAndVersion(id, version), Book.class);
+  }
+
+  @Override
+  public Page<Book> searchByIsbnOrTitle(String text, Pageable pageable) {
+    Criteria criteria = new Criteria().orOperator(
+        Criteria.where("isbn").is(text),
+        Criteria.where("title").regex(Pattern.quote(text), "i"));
+
+    // _id as tie breaker keeps the order stable across pages
+    Sort sort = pageable.getSort().and(Sort.by("_id"));
+    FacetOperation facet = Aggregation
+        .facet(Aggregation.sort(sort), Aggregation.skip(pageable.getOffset()),
+            Aggregation.limit(pageable.getPageSize()))
+        .as("content")
+        .and(Aggregation.count().as("total")).as("total");
+
+    Document result = mongoTemplate
+        .aggregate(Aggregation.newAggregation(Aggregation.match(criteria), facet), Book.class, Document.class)
+        .getUniqueMappedResult();
+    if (result == null) {
+      return Page.empty(pageable);
+    }
+
+    List<Book> content = result.getList("content", Document.class).stream()
+        .map(document -> mongoTemplate.getConverter().read(Book.class, document))
+        .toList();
+    List<Document> total = result.getList("total", Document.class);
+    return new PageImpl<>(content, pageable, total.isEmpty() ? 0 : total.get(0).get("total", Number.class).longValue());
+  }
+
+  @Override
+  public CursorPage<Book> scrollAll(String cursor, int size, Sort sort, boolean withCount) {
+    return CursorSupport.scroll(mongoTemplate, new Query(), sort, cursor, size, withCount, Book.class);
+  }
+
+  @Override
+  public CursorPage<Book> scrollByTitleContaining(String title, String cursor, int size, Sort sort,
+      boolean withCount) {
+    Query query = new Query(Criteria.where("title").regex(Pattern.quote(title), "i"));
+    return CursorSupport.scroll(mongoTemplate, query, sort, cursor, size, withCount, Book.class);
+  }
+
+}
@@ -0,0 +1,70 @@
+package de.dhbw_ravensburg.webeng2.backend.repos;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+
+import de.dhbw_ravensburg.webeng2.backend.model.CursorPage;
+
+/**
+ * Keyset pagination shared by the custom repository fragments.
+ * The continuation token is the base64 encoded set of sort keys of the last returned document,
+ * which always includes its _id, so every slice is a single indexed range query.
+ */
+public final class CursorSupport {
+
+  private CursorSupport() {
+  }
+
+  /**
+   * Reads the slice after the given cursor.
+   *
+   * @param operations The template to query with
+   * @param query      The filter, must not carry sort, skip or limit
+   * @param sort       The sort order, _id is appended as tie breaker
+   * @param cursor     The token of the previous slice, null for the first slice
+   * @param size       The maximum number of elements in the slice
+   * @param withCount  Whether to run an additional count query for the total
+   * @param type       The entity type
+   * @return The slice with the token for the next one
+   */
+  public static <T> CursorPage<T> scroll(MongoOperations operations, Query query, Sort sort, String cursor,
+      int size, boolean withCount, Class<T> type) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Size must be at least 1");
+    }
+    Long total = withCount ? operations.count(Query.of(query), type) : null;
+
+    ScrollPosition position = cursor == null || cursor.isEmpty() ? ScrollPosition.keyset() : decode(cursor);
+    Window<T> window = operations.scroll(query.with(sort).limit(size).with(position), type);
+
+    String nextCursor = null;
+    if (window.hasNext() && !window.isEmpty()) {
+      nextCursor = encode((KeysetScrollPosition) window.positionAt(window.size() - 1));
+    }
+    return new CursorPage<>(window.getContent(), nextCursor, total);
+  }
+
+  private static String encode(KeysetScrollPosition position) {
+    String json = new Document(position.getKeys()).toJson();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static ScrollPosition decode(String cursor) {
+    try {
+      String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      return ScrollPosition.forward(Document.parse(json));
+    } catch (JsonParseException e) {
+      throw new IllegalArgumentException("Invalid cursor", e);
+    }
+  }
+
+}
@@ -1,8 +1,9 @@
 package de.dhbw_ravensburg.webeng2.backend.repos;
 
 import de.dhbw_ravensburg.webeng2.backend.model.Library;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryDTO;
 
-import java.util.List;
+import java.util.Collection;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,10 +11,20 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
 @RepositoryRestResource(collectionResourceRel = "libraries", path = "libraries", exported = false)
-public interface LibraryRepository extends MongoRepository<Library, String> {
+public interface LibraryRepository extends MongoRepository<Library, String>, LibraryRepositoryCustom {
 
   Page<Library> findByNameContainingIgnoreCase(String name, Pageable pageable);
 
   Page<Library> findByIsbnListContaining(String isbn, Pageable pageable);
 
+  // Projections loading only the LibraryDTO fields, leaving out the inventory
+
+  Page<LibraryDTO> findProjectedBy(Pageable pageable);
+
+  Page<LibraryDTO> findProjectedByNameContainingIgnoreCase(String name, Pageable pageable);
+
+  Page<LibraryDTO> findProjectedByIsbnListContaining(String isbn, Pageable pageable);
+
+  Page<LibraryDTO> findProjectedByIdIn(Collection<String> ids, Pageable pageable);
+
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package de.dhbw_ravensburg.webeng2.backend.repos;
+
+import de.dhbw_ravensburg.webeng2.backend.model.CursorPage;
+import de.dhbw_ravensburg.webeng2.backend.model.Library;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryDTO;
+
+import java.util.Collection;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+public interface LibraryRepositoryCustom {
+
+  /**
+   * Keyset paginated variant of findAll, see {@link CursorSupport}. The inventory is not loaded.
+   */
+  CursorPage<Library> scrollAll(String cursor, int size, Sort sort, boolean withCount);
+
+  /**
+   * Keyset paginated variant of findByNameContainingIgnoreCase, see {@link CursorSupport}. The inventory is not loaded.
+   */
+  CursorPage<Library> scrollByNameContaining(String name, String cursor, int size, Sort sort, boolean withCount);
+
+  /**
+   * Adds ISBNs to the inventory of a library with an in-place $addToSet, without loading the document.
+   * Increments the version like every other write of the inventory.
+   *
+   * @return false if the library does not exist
+   */
+  boolean addIsbns(String id, Collection<String> isbns);
+
+  /**
+   * Removes ISBNs from the inventory of a library with an in-place $pullAll, without loading the document.
+   * Increments the version like every other write of the inventory.
+   *
+   * @return false if the library does not exist
+   */
+  boolean removeIsbns(String id, Collection<String> isbns);
+
+  /**
+   * Updates name, location and optionally the embedded inventory of a library and increments its
+   * version in a single findAndModify.
+   *
+   * @param version       The version the caller has seen, see {@link VersionSupport#byIdAndVersion}
+   * @param withInventory false to leave the isbnList untouched, e.g. with bucketed inventory storage
+   * @return The updated library, null if no library with the id (and version) exists
+   */
+  Library updateVersioned(String id, long version, Library changes, boolean withInventory);
+
+  /**
+   * Deletes a library document in a single findAndRemove.
+   *
+   * @param version The version the caller has seen, see {@link VersionSupport#byIdAndVersion}
+   * @return The deleted library, null if no library with the id (and version) exists
+   */
+  Library deleteVersioned(String id, long version);
+
+  /**
+   * Finds libraries ordered by their true distance from a location, computed with $geoNear on the
+   * 2dsphere index. Libraries without location are left out.
+   *
+   * @param location The location of the caller
+   * @param radiusKm The maximum distance in kilometers, null for no limit
+   * @param filter   Additional criteria, null for none
+   * @return The requested page, the distance of every library is set to kilometers from the location
+   */
+  Page<LibraryDTO> findNear(GeoJsonPoint location, Double radiusKm, Criteria filter, Pageable pageable);
+
+}
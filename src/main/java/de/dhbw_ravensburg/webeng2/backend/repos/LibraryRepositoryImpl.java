@@ -0,0 +1,122 @@
+package de.dhbw_ravensburg.webeng2.backend.repos;
+
+import de.dhbw_ravensburg.webeng2.backend.model.CursorPage;
+import de.dhbw_ravensburg.webeng2.backend.model.Library;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.NearQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+public class LibraryRepositoryImpl implements LibraryRepositoryCustom {
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Override
+  public CursorPage<Library> scrollAll(String cursor, int size, Sort sort, boolean withCount) {
+    return CursorSupport.scroll(mongoTemplate, withoutInventory(new Query()), sort, cursor, size, withCount,
+        Library.class);
+  }
+
+  @Override
+  public CursorPage<Library> scrollByNameContaining(String name, String cursor, int size, Sort sort,
+      boolean withCount) {
+    Query query = new Query(Criteria.where("name").regex(Pattern.quote(name), "i"));
+    return CursorSupport.scroll(mongoTemplate, withoutInventory(query), sort, cursor, size, withCount,
+        Library.class);
+  }
+
+  @Override
+  public boolean addIsbns(String id, Collection<String> isbns) {
+    // Bumping the version makes a concurrent versioned update of the whole inventory fail
+    Update update = new Update().addToSet("isbnList").each(isbns.toArray()).inc("version", 1);
+    return mongoTemplate.updateFirst(byId(id), update, Library.class).getMatchedCount() > 0;
+  }
+
+  @Override
+  public boolean removeIsbns(String id, Collection<String> isbns) {
+    Update update = new Update().pullAll("isbnList", isbns.toArray()).inc("version", 1);
+    return mongoTemplate.updateFirst(byId(id), update, Library.class).getMatchedCount() > 0;
+  }
+
+  @Override
+  public Library updateVersioned(String id, long version, Library changes, boolean withInventory) {
+    Update update = new Update()
+        .set("name", changes.getName())
+        .inc("version", 1);
+    if (changes.getLocation() != null) {
+      update.set("location", changes.getLocation());
+    }
+    if (withInventory) {
+      update.set("isbnList", changes.getIsbnList());
+    }
+    return mongoTemplate.findAndModify(VersionSupport.byIdAndVersion(id, version), update,
+        FindAndModifyOptions.options().returnNew(true), Library.class);
+  }
+
+  @Override
+  public Library deleteVersioned(String id, long version) {
+    return mongoTemplate.findAndRemove(VersionSupport.byIdAndVersion(id, version), Library.class);
+  }
+
+  @Override
+  public Page<LibraryDTO> findNear(GeoJsonPoint location, Double radiusKm, Criteria filter, Pageable pageable) {
+    // With a GeoJSON point $geoNear works in meters
+    NearQuery near = NearQuery.near(location).spherical(true);
+    if (radiusKm != null) {
+      near.maxDistance(radiusKm * 1000);
+    }
+    if (filter != null) {
+      near.query(new Query(filter));
+    }
+
+    Aggregation aggregation = Aggregation.newAggregation(
+        Aggregation.geoNear(near, "distanceMeters"),
+        Aggregation.skip(pageable.getOffset()),
+        Aggregation.limit(pageable.getPageSize()),
+        Aggregation.project("name", "distanceMeters"));
+    List<LibraryDTO> content = mongoTemplate.aggregate(aggregation, Library.class, Document.class)
+        .getMappedResults().stream()
+        .map(document -> new LibraryDTO(String.valueOf(document.get("_id")), document.getString("name"),
+            (float) (document.get("distanceMeters", Number.class).doubleValue() / 1000)))
+        .toList();
+
+    // $geoNear can't be counted, count the same libraries with $geoWithin instead
+    Query count = new Query(radiusKm != null
+        ? Criteria.where("location").withinSphere(new Circle(location, new Distance(radiusKm, Metrics.KILOMETERS)))
+        : Criteria.where("location").exists(true));
+    if (filter != null) {
+      count.addCriteria(filter);
+    }
+    return new PageImpl<>(content, pageable, mongoTemplate.count(count, Library.class));
+  }
+
+  private static Query byId(String id) {
+    return new Query(Criteria.where("id").is(id));
+  }
+
+  private static Query withoutInventory(Query query) {
+    query.fields().exclude("isbnList");
+    return query;
+  }
+
+}
@@ -0,0 +1,23 @@
+package de.dhbw_ravensburg.webeng2.backend.repos;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Book;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking read access to the books, used by the reactive API.
+ * All writes go through {@link BookRepository}, which also maintains the search and inventory indexes.
+ */
+public interface ReactiveBookRepository extends ReactiveMongoRepository<Book, String> {
+
+  Flux<Book> findByTitleContainingIgnoreCase(String title, Pageable pageable);
+
+  Mono<Long> countByTitleContainingIgnoreCase(String title);
+
+  Mono<Book> findByIsbn(String isbn);
+
+}
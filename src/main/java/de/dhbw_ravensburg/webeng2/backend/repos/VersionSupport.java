@@ -0,0 +1,28 @@
+package de.dhbw_ravensburg.webeng2.backend.repos;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Optimistic locking for atomic findAndModify and findAndRemove operations, which bypass the @Version
+ * handling of save. The version is part of the query, so a concurrent change makes the operation match
+ * nothing instead of overwriting it.
+ */
+public final class VersionSupport {
+
+  private VersionSupport() {
+  }
+
+  /**
+   * @param version The version the caller has seen. Documents written before versioning have no version
+   *                field and match version 0, their first versioned write sets it to 1
+   */
+  public static Query byIdAndVersion(String id, long version) {
+    Criteria byVersion = Criteria.where("version").is(version);
+    if (version == 0) {
+      byVersion = new Criteria().orOperator(byVersion, Criteria.where("version").exists(false));
+    }
+    return new Query(Criteria.where("id").is(id).andOperator(byVersion));
+  }
+
+}
@@ -0,0 +1,124 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Fetches the BookInfo of newly written books in the background, so the first user viewing a book
+ * hits the cache instead of waiting for the external APIs.
+ * ISBNs are processed by the bounded enrichmentExecutor, and an ISBN already waiting is not queued twice.
+ * Workers start at most max-per-second upstream fetches per second together. ISBNs that are already
+ * cached don't count against that limit.
+ */
+@Component
+public class BookInfoEnrichmentQueue {
+
+    @Autowired
+    private BookInfoService bookInfoService;
+
+    @Autowired
+    @Qualifier("enrichmentExecutor")
+    private ThreadPoolTaskExecutor enrichmentExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookinfo.enrichment.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bookinfo.enrichment.max-per-second:5}")
+    private double maxPerSecond;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private long nextFetchNanos = System.nanoTime();
+
+    private Counter enqueued;
+    private Counter dropped;
+    private Counter failed;
+    private Timer processed;
+
+    @PostConstruct
+    private void registerMetrics() {
+        Gauge.builder("bookinfo.enrichment.queue.depth", pending, Set::size)
+            .description("ISBNs waiting for enrichment")
+            .register(meterRegistry);
+        enqueued = Counter.builder("bookinfo.enrichment.enqueued")
+            .description("ISBNs queued for enrichment")
+            .register(meterRegistry);
+        dropped = Counter.builder("bookinfo.enrichment.dropped")
+            .description("ISBNs not queued because the queue was full")
+            .register(meterRegistry);
+        failed = Counter.builder("bookinfo.enrichment.failed")
+            .description("Enrichments that failed, the ISBN is fetched on its first request instead")
+            .register(meterRegistry);
+        processed = Timer.builder("bookinfo.enrichment.processed")
+            .description("Processed enrichments, the count rate is the throughput of the queue")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queues an ISBN for enrichment. Returns immediately, a full queue drops the ISBN.
+     *
+     * @param isbn The ISBN of the written book
+     */
+    public void enqueue(@NonNull String isbn) {
+        if (!enabled || !pending.add(isbn)) {
+            return;
+        }
+        try {
+            enrichmentExecutor.execute(() -> enrich(isbn));
+            enqueued.increment();
+        } catch (RejectedExecutionException e) {
+            pending.remove(isbn);
+            dropped.increment();
+        }
+    }
+
+    private void enrich(String isbn) {
+        pending.remove(isbn);
+        processed.record(() -> {
+            try {
+                if (!bookInfoService.isCached(isbn)) {
+                    awaitFetchSlot();
+                    bookInfoService.getBookInfo(isbn);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.increment();
+            } catch (RuntimeException e) {
+                failed.increment();
+            }
+        });
+    }
+
+    /**
+     * Spaces upstream fetches of all workers evenly, waiting threads are served in arrival order.
+     */
+    private void awaitFetchSlot() throws InterruptedException {
+        long slot;
+        synchronized (this) {
+            long now = System.nanoTime();
+            slot = Math.max(now, nextFetchNanos);
+            nextFetchNanos = slot + (long) (TimeUnit.SECONDS.toNanos(1) / maxPerSecond);
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import de.dhbw_ravensburg.webeng2.backend.model.BookInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-process cache in front of the Redis BookInfo repository.
+ * Entries are bounded by size and expire after a fixed TTL. Whenever a node rewrites a BookInfo
+ * it publishes the ISBN on a Redis channel, so all other nodes drop their local copy.
+ */
+@Component
+public class BookInfoNearCache implements MessageListener {
+    public static final String INVALIDATION_CHANNEL = "BookInfo:invalidate";
+
+    // Identifies this node so it can ignore its own invalidation messages
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookinfo.near-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${bookinfo.near-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private Cache<String, BookInfo> cache;
+
+    @PostConstruct
+    private void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "bookinfo.near");
+    }
+
+    /**
+     * Looks up a BookInfo in the local cache.
+     *
+     * @param isbn The ISBN of the book
+     * @return The cached BookInfo or null if it isn't cached locally
+     */
+    public BookInfo get(@NonNull String isbn) {
+        return cache.getIfPresent(isbn);
+    }
+
+    /**
+     * Stores a BookInfo that was read from Redis in the local cache.
+     *
+     * @param bookInfo The BookInfo to cache
+     */
+    public void put(@NonNull BookInfo bookInfo) {
+        cache.put(bookInfo.getIsbn(), bookInfo);
+    }
+
+    /**
+     * Stores a BookInfo that was just rewritten in Redis and tells all other nodes to drop their copy.
+     *
+     * @param bookInfo The rewritten BookInfo
+     */
+    public void update(@NonNull BookInfo bookInfo) {
+        put(bookInfo);
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + ":" + bookInfo.getIsbn());
+    }
+
+    /**
+     * Handles invalidation messages published by other nodes.
+     */
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        var body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        cache.invalidate(body.substring(separator + 1));
+    }
+}
@@ -1,73 +1,775 @@
 package de.dhbw_ravensburg.webeng2.backend.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.lang.NonNull;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 
 import de.dhbw_ravensburg.webeng2.backend.model.BookInfo;
+import de.dhbw_ravensburg.webeng2.backend.repos.BookRepository;
 import de.dhbw_ravensburg.webeng2.backend.repos.RedisRepository;
+import jakarta.annotation.PostConstruct;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 
 @Service
 public class BookInfoService {
-    private static final String GOOGLE_BOOKS_API = "https://www.googleapis.com/books/v1/volumes?q=isbn:";
-    private static final String OPEN_LIBRARY_API = "https://openlibrary.org/api/books?bibkeys=ISBN:{isbn}&format=json&jscmd=data";
+    // Relative to bookinfo.upstream.<name>.base-url
+    static final String GOOGLE_BOOKS_API = "/books/v1/volumes?q=isbn:";
+    static final String OPEN_LIBRARY_API = "/api/books?bibkeys={bibkeys}&format=json&jscmd=data";
+    static final String NOT_FOUND_KEY_PREFIX = "BookInfoNotFound:";
+    // Keyspace of the @RedisHash on BookInfo, also the name of the set holding all cached ISBNs
+    static final String BOOK_INFO_KEYSPACE = "BookInfo";
+    // Cached ISBNs drawn at once when picking a random cached book
+    private static final int RANDOM_CANDIDATES = 10;
+    // Cached ISBNs checked per pipeline when expiring entries without TTL
+    private static final int EXPIRY_CHUNK_SIZE = 1000;
     
     @Autowired
     private RedisRepository redisRepository;
+
+    @Autowired
+    private BookInfoNearCache nearCache;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisConverter redisConverter;
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    @Qualifier("upstreamExecutor")
+    private Executor upstreamExecutor;
+
+    @Autowired
+    @Qualifier("refreshExecutor")
+    private Executor refreshExecutor;
+
+    @Value("${bookinfo.upstream.google-books.base-url:https://www.googleapis.com}")
+    private String googleBooksBaseUrl;
+
+    @Value("${bookinfo.upstream.open-library.base-url:https://openlibrary.org}")
+    private String openLibraryBaseUrl;
+
+    @Value("${bookinfo.upstream.google-books.timeout-ms:2000}")
+    private long googleBooksTimeoutMs;
+
+    @Value("${bookinfo.upstream.google-books.max-concurrent:8}")
+    private int googleBooksMaxConcurrent;
+
+    @Value("${bookinfo.upstream.open-library.timeout-ms:2000}")
+    private long openLibraryTimeoutMs;
+
+    @Value("${bookinfo.upstream.open-library.max-concurrent:8}")
+    private int openLibraryMaxConcurrent;
+
+    @Value("${bookinfo.upstream.google-books.max-connections:8}")
+    private int googleBooksMaxConnections;
+
+    @Value("${bookinfo.upstream.open-library.max-connections:8}")
+    private int openLibraryMaxConnections;
+
+    @Value("${bookinfo.upstream.google-books.rate-per-second:10}")
+    private double googleBooksRatePerSecond;
+
+    @Value("${bookinfo.upstream.google-books.burst:10}")
+    private int googleBooksBurst;
+
+    @Value("${bookinfo.upstream.open-library.rate-per-second:5}")
+    private double openLibraryRatePerSecond;
+
+    @Value("${bookinfo.upstream.open-library.burst:5}")
+    private int openLibraryBurst;
+
+    @Value("${bookinfo.upstream.open-library.batch-size:20}")
+    private int openLibraryBatchSize;
+
+    @Value("${bookinfo.upstream.open-library.batch-linger-ms:20}")
+    private long openLibraryBatchLingerMs;
+
+    @Value("${bookinfo.upstream.rate-limit.max-wait-ms:2000}")
+    private long rateLimitMaxWaitMs;
+
+    @Value("${bookinfo.upstream.circuit.failure-threshold:5}")
+    private int circuitFailureThreshold;
+
+    @Value("${bookinfo.upstream.circuit.open-ms:30000}")
+    private long circuitOpenMs;
+
+    @Value("${bookinfo.cache.ttl-seconds:86400}")
+    private long cacheTtlSeconds;
+
+    @Value("${bookinfo.cache.negative-ttl-seconds:600}")
+    private long negativeCacheTtlSeconds;
+
+    @Value("${bookinfo.cache.refresh-ahead.enabled:true}")
+    private boolean refreshAheadEnabled;
+
+    @Value("${bookinfo.cache.refresh-ahead.after-seconds:43200}")
+    private long refreshAfterSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UpstreamHttpClients httpClients;
+
+    private Upstream googleBooks;
+    private Upstream openLibrary;
+
+    // Open Library lookups collected for the next multi-ISBN request
+    private final Object openLibraryBatchLock = new Object();
+    private OpenLibraryBatch openLibraryBatch = new OpenLibraryBatch();
+
+    // Upstream fetches currently running, keyed by ISBN
+    private final Map<String, CompletableFuture<BookInfo>> inFlight = new ConcurrentHashMap<>();
+
+    // Caches the result of a fetch. A rejected task would leave the fetch uncompleted forever,
+    // so completions that don't fit into the upstream pool run on the common pool instead.
+    private final Executor completionExecutor = command -> {
+        try {
+            upstreamExecutor.execute(command);
+        } catch (RejectedExecutionException e) {
+            ForkJoinPool.commonPool().execute(command);
+        }
+    };
+
+    // ISBNs with a background refresh queued or running
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private Counter coalescedRequests;
+
+    @PostConstruct
+    private void registerMetrics() {
+        coalescedRequests = Counter.builder("bookinfo.fetch.coalesced")
+            .description("Cache misses that joined an upstream fetch already in flight for the same ISBN")
+            .register(meterRegistry);
+        googleBooks = createUpstream("google-books", googleBooksBaseUrl, googleBooksTimeoutMs, googleBooksMaxConcurrent,
+            googleBooksMaxConnections, googleBooksRatePerSecond, googleBooksBurst);
+        openLibrary = createUpstream("open-library", openLibraryBaseUrl, openLibraryTimeoutMs, openLibraryMaxConcurrent,
+            openLibraryMaxConnections, openLibraryRatePerSecond, openLibraryBurst);
+    }
+
+    private Upstream createUpstream(String name, String baseUrl, long timeoutMs, int maxConcurrent, int maxConnections,
+            double ratePerSecond, int burst) {
+        // The read timeout frees the thread of a hanging call, not just the waiting caller
+        var restTemplate = httpClients.create(name, baseUrl, timeoutMs, maxConnections);
+        var guard = new UpstreamGuard(name, maxConcurrent, circuitFailureThreshold, circuitOpenMs, meterRegistry);
+        var rateLimiter = new UpstreamRateLimiter(name, ratePerSecond, burst, meterRegistry);
+        return new Upstream(restTemplate, guard, rateLimiter, timeoutMs);
+    }
+
+    /**
+     * @return Google Books, its circuit breaker, bulkhead and rate limiter are shared by all callers
+     */
+    Upstream getGoogleBooks() {
+        return googleBooks;
+    }
+
+    /**
+     * @return Open Library, its circuit breaker, bulkhead and rate limiter are shared by all callers
+     */
+    Upstream getOpenLibrary() {
+        return openLibrary;
+    }
 
     /**
      * Retrieves book information from cache or external APIs.
-     * First checks Redis cache, if not found fetches from Google Books and Open Library APIs.
+     * First checks the in-process near cache, then Redis cache, if not found fetches from Google Books and Open Library APIs.
+     * Concurrent cache misses for the same ISBN share a single upstream fetch.
+     * ISBNs that neither API knows are remembered for a short time and not looked up again.
+     * Entries past their soft expiry are still returned, but refreshed in the background.
      *
      * @param isbn The ISBN of the book to lookup
-     * @return BookInfo object containing consolidated information from various sources
+     * @return BookInfo object containing consolidated information from various sources, or null if the ISBN is unknown
      */
     @Operation(summary = "Get Book Information", 
               description = "Retrieves book information from cache or external APIs (Google Books and Open Library)")
     public BookInfo getBookInfo(@Parameter(description = "ISBN of the book") @NonNull String isbn) {
+        var cached = nearCache.get(isbn);
+        if (cached != null) {
+            return refreshIfStale(cached);
+        }
         return redisRepository.findById(isbn)
-            .orElseGet(() -> fetchAndCacheBookInfo(isbn));
+            .map(bookInfo -> {
+                remember(bookInfo);
+                return refreshIfStale(bookInfo);
+            })
+            .orElseGet(() -> isKnownNotFound(isbn) ? null : fetchCoalesced(isbn));
     }
 
     /**
-     * Fetches book information from external APIs and caches the result.
-     * Combines data from Google Books API and Open Library API.
+     * Checks whether a lookup of the ISBN would be answered without calling the external APIs,
+     * because its BookInfo is cached or it is known to be unknown.
+     *
+     * @param isbn The ISBN of the book
+     * @return true if the ISBN is cached
+     */
+    public boolean isCached(@NonNull String isbn) {
+        return nearCache.get(isbn) != null
+            || Boolean.TRUE.equals(redisTemplate.hasKey(BOOK_INFO_KEYSPACE + ":" + isbn))
+            || isKnownNotFound(isbn);
+    }
+
+    /**
+     * Retrieves the book information of a random book in the catalog whose BookInfo is already cached in Redis.
+     * Never calls the external APIs.
+     *
+     * @return A random cached BookInfo, or null if none of the sampled ISBNs belongs to a book
+     */
+    public BookInfo getRandomCachedBookInfo() {
+        // The cache also holds ISBNs looked up without a book and those of deleted books,
+        // and a sampled entry may expire before it is read, so draw several candidates at once
+        var candidates = redisTemplate.opsForSet().distinctRandomMembers(BOOK_INFO_KEYSPACE, RANDOM_CANDIDATES);
+        if (candidates == null) {
+            return null;
+        }
+        for (var isbn : candidates) {
+            if (!bookRepository.existsByIsbn(isbn)) {
+                continue;
+            }
+            var cached = nearCache.get(isbn);
+            if (cached != null) {
+                return refreshIfStale(cached);
+            }
+            var stored = redisRepository.findById(isbn);
+            if (stored.isPresent()) {
+                remember(stored.get());
+                return refreshIfStale(stored.get());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Schedules a background refresh if the entry is past its soft expiry.
+     * The entry itself is returned unchanged, its hard expiry is the Redis TTL.
+     *
+     * @param bookInfo The cached BookInfo
+     * @return The given BookInfo
+     */
+    BookInfo refreshIfStale(BookInfo bookInfo) {
+        if (!refreshAheadEnabled || ageMillis(bookInfo) < refreshAfterSeconds * 1000) {
+            return bookInfo;
+        }
+        var isbn = bookInfo.getIsbn();
+        if (!refreshing.add(isbn)) {
+            return bookInfo;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    fetchCoalesced(isbn);
+                } finally {
+                    refreshing.remove(isbn);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Refresh queue is full, a later request will try again
+            refreshing.remove(isbn);
+        }
+        return bookInfo;
+    }
+
+    /**
+     * Entries written before fetchedAt was stored have no fetch time, their age is derived from the
+     * remaining Redis TTL instead. Entries written before the cache had a TTL never expire, they count
+     * as stale so the refresh saves them again with a TTL. If the TTL wasn't read the age is unknown
+     * and taken as 0, those entries are refreshed once the TTL is known.
+     *
+     * @param bookInfo The cached BookInfo
+     * @return The time since the BookInfo was fetched in milliseconds
+     */
+    private long ageMillis(BookInfo bookInfo) {
+        if (bookInfo.getFetchedAt() > 0) {
+            return System.currentTimeMillis() - bookInfo.getFetchedAt();
+        }
+        Long remainingSeconds = bookInfo.getTimeToLive();
+        if (remainingSeconds == null || remainingSeconds < -1 || remainingSeconds > cacheTtlSeconds) {
+            return 0;
+        }
+        if (remainingSeconds == -1) {
+            return Long.MAX_VALUE;
+        }
+        return (cacheTtlSeconds - remainingSeconds) * 1000;
+    }
+
+    /**
+     * Gives every cached BookInfo without a TTL an expiry, so entries written before the cache had a TTL
+     * don't stay in Redis forever. The expiries are spread over the second half of the cache TTL,
+     * so these entries don't all miss at once.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void expirePersistentBookInfos() {
+        try (Cursor<String> cursor = redisTemplate.opsForSet().scan(BOOK_INFO_KEYSPACE,
+                ScanOptions.scanOptions().count(EXPIRY_CHUNK_SIZE).build())) {
+            var chunk = new ArrayList<String>(EXPIRY_CHUNK_SIZE);
+            while (cursor.hasNext()) {
+                chunk.add(cursor.next());
+                if (chunk.size() == EXPIRY_CHUNK_SIZE || !cursor.hasNext()) {
+                    List<Object> ttls = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                        for (var isbn : chunk) {
+                            connection.keyCommands().ttl(toBytes(BOOK_INFO_KEYSPACE + ":" + isbn));
+                        }
+                        return null;
+                    });
+                    var persistent = new ArrayList<String>();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        // -1 is an existing key without expiry
+                        if (Long.valueOf(-1).equals(ttls.get(i))) {
+                            persistent.add(chunk.get(i));
+                        }
+                    }
+                    if (!persistent.isEmpty()) {
+                        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                            for (var isbn : persistent) {
+                                long ttl = ThreadLocalRandom.current().nextLong(cacheTtlSeconds / 2, cacheTtlSeconds + 1);
+                                connection.keyCommands().expire(toBytes(BOOK_INFO_KEYSPACE + ":" + isbn), ttl);
+                            }
+                            return null;
+                        });
+                    }
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves book information for many ISBNs at once.
+     * Near cache hits are served directly, all remaining ISBNs are read from Redis in a single
+     * pipelined round trip, and only the misses are fetched from the external APIs, concurrently.
+     *
+     * @param isbns The ISBNs of the books to lookup
+     * @return BookInfo objects keyed by ISBN, unknown ISBNs are left out
+     */
+    public Map<String, BookInfo> getBookInfos(@NonNull Collection<String> isbns) {
+        var bookInfos = new LinkedHashMap<String, BookInfo>();
+        var remaining = new ArrayList<String>();
+        for (var isbn : new LinkedHashSet<>(isbns)) {
+            var cached = nearCache.get(isbn);
+            if (cached != null) {
+                bookInfos.put(isbn, refreshIfStale(cached));
+            } else {
+                remaining.add(isbn);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return bookInfos;
+        }
+
+        // One HGETALL for the entry and one EXISTS for the not found marker per ISBN
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (var isbn : remaining) {
+                connection.hashCommands().hGetAll(toBytes(BOOK_INFO_KEYSPACE + ":" + isbn));
+                connection.keyCommands().exists(toBytes(NOT_FOUND_KEY_PREFIX + isbn));
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+
+        var misses = new LinkedHashMap<String, CompletableFuture<BookInfo>>();
+        for (int i = 0; i < remaining.size(); i++) {
+            var isbn = remaining.get(i);
+            @SuppressWarnings("unchecked")
+            var hash = (Map<byte[], byte[]>) results.get(2 * i);
+            if (hash != null && !hash.isEmpty()) {
+                var bookInfo = readBookInfo(isbn, hash);
+                remember(bookInfo);
+                bookInfos.put(isbn, refreshIfStale(bookInfo));
+            } else if (!Boolean.TRUE.equals(results.get(2 * i + 1))) {
+                misses.put(isbn, fetchCoalescedAsync(isbn));
+            }
+        }
+
+        misses.forEach((isbn, future) -> {
+            var bookInfo = future.exceptionally(ex -> null).join();
+            if (bookInfo != null) {
+                bookInfos.put(isbn, bookInfo);
+            }
+        });
+        return bookInfos;
+    }
+
+    /**
+     * Visits every cached BookInfo without loading all of them at once.
+     * The set of cached ISBNs is scanned incrementally and the entries are read in pipelined chunks.
+     * Entries expiring during the scan are skipped.
+     *
+     * @param chunkSize Number of entries read per pipeline
+     * @param action    Called for every cached BookInfo
+     */
+    public void forEachCachedBookInfo(int chunkSize, @NonNull Consumer<BookInfo> action) {
+        try (Cursor<String> cursor = redisTemplate.opsForSet().scan(BOOK_INFO_KEYSPACE,
+                ScanOptions.scanOptions().count(chunkSize).build())) {
+            var chunk = new ArrayList<String>(chunkSize);
+            while (cursor.hasNext()) {
+                chunk.add(cursor.next());
+                if (chunk.size() == chunkSize || !cursor.hasNext()) {
+                    List<Object> hashes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                        for (var isbn : chunk) {
+                            connection.hashCommands().hGetAll(toBytes(BOOK_INFO_KEYSPACE + ":" + isbn));
+                        }
+                        return null;
+                    }, RedisSerializer.byteArray());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        @SuppressWarnings("unchecked")
+                        var hash = (Map<byte[], byte[]>) hashes.get(i);
+                        if (hash != null && !hash.isEmpty()) {
+                            action.accept(readBookInfo(chunk.get(i), hash));
+                        }
+                    }
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps a raw BookInfo hash read from Redis the same way the RedisRepository does.
+     *
+     * @param isbn The ISBN the hash is stored under
+     * @param hash The raw hash fields
+     * @return The mapped BookInfo
+     */
+    BookInfo readBookInfo(String isbn, Map<byte[], byte[]> hash) {
+        var data = new RedisData(hash);
+        data.setId(isbn);
+        data.setKeyspace(BOOK_INFO_KEYSPACE);
+        return redisConverter.read(BookInfo.class, data);
+    }
+
+    private static byte[] toBytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fetches book information, joining an upstream fetch for the same ISBN if one is already running.
+     * The first caller performs the fetch, every concurrent caller waits for and shares its result.
      *
      * @param isbn The ISBN of the book to fetch information for
      * @return BookInfo object containing the fetched and cached information
      */
-    private BookInfo fetchAndCacheBookInfo(@NonNull String isbn) {
+    private BookInfo fetchCoalesced(@NonNull String isbn) {
+        try {
+            return fetchCoalescedAsync(isbn).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #fetchCoalesced(String)}.
+     *
+     * @param isbn The ISBN of the book to fetch information for
+     * @return Future holding the fetched and cached information
+     */
+    private CompletableFuture<BookInfo> fetchCoalescedAsync(@NonNull String isbn) {
+        var future = new CompletableFuture<BookInfo>();
+        var running = inFlight.putIfAbsent(isbn, future);
+        if (running != null) {
+            coalescedRequests.increment();
+            return running;
+        }
+
+        fetchAndCacheBookInfo(isbn).whenComplete((bookInfo, ex) -> {
+            // Leave the in-flight map first, so later misses read the cached result instead
+            inFlight.remove(isbn, future);
+            if (ex != null) {
+                future.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                future.complete(bookInfo);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Fetches book information from external APIs and caches the result.
+     * Google Books API and Open Library API are queried concurrently, each with its own timeout,
+     * so a cache miss costs roughly the slower of both calls. A source that fails, times out or
+     * whose circuit is open is skipped and the result is built from whatever the other source returned,
+     * see {@link #cache(BookInfo, boolean)} for how such a partial result is cached.
+     * If both APIs answered and neither knows the ISBN, this is cached as not found.
+     *
+     * @param isbn The ISBN of the book to fetch information for
+     * @return Future holding the fetched and cached information, or null if the ISBN is unknown
+     */
+    private CompletableFuture<BookInfo> fetchAndCacheBookInfo(@NonNull String isbn) {
+        var googleFuture = callUpstream(googleBooks, () -> fetchFromGoogleBooks(isbn));
+        var openLibraryFuture = lookupOpenLibrary(isbn);
+
+        // The last lookup may complete on the JDK delay scheduler (timeouts, rate limiter, batch linger),
+        // which must never wait for Redis
+        return googleFuture.thenCombineAsync(openLibraryFuture, (google, openLibrary) -> {
+            var bookInfo = merge(isbn, google.value(), openLibrary.value());
+            if (bookInfo.getTitle() != null) {
+                return cache(bookInfo, google.answered() && openLibrary.answered());
+            }
+            // Only remember the ISBN as unknown if no source failed, a failure may hide a real result
+            if (google.answered() && openLibrary.answered()) {
+                redisTemplate.opsForValue().set(NOT_FOUND_KEY_PREFIX + isbn, "", Duration.ofSeconds(negativeCacheTtlSeconds));
+            }
+            return null;
+        }, completionExecutor);
+    }
+
+    /**
+     * Builds a BookInfo from the answers of both APIs.
+     * Google Books is merged first, Open Library only fills in what is still missing.
+     *
+     * @param isbn        The ISBN of the book
+     * @param volumeInfo  The Google Books volume information, or null
+     * @param olData      The Open Library book data, or null
+     * @return The merged BookInfo, without title if neither API knows the ISBN
+     */
+    BookInfo merge(@NonNull String isbn, VolumeInfo volumeInfo, Map<String, Object> olData) {
         var bookInfo = new BookInfo(isbn);
-        
-        // Fetch from Google Books
-        var googleResponse = restTemplate.getForObject(GOOGLE_BOOKS_API + isbn, GoogleBooksResponse.class);
-        if (googleResponse != null && googleResponse.items != null && !googleResponse.items.isEmpty()) {
-            updateFromGoogleBooks(bookInfo, googleResponse.items.get(0).volumeInfo);
+        if (volumeInfo != null) {
+            updateFromGoogleBooks(bookInfo, volumeInfo);
         }
-        
-        var openLibraryUrl = OPEN_LIBRARY_API.replace("{isbn}", isbn);
-        var openLibraryResponse = restTemplate.getForObject(openLibraryUrl, Map.class);
-        if (openLibraryResponse != null && !openLibraryResponse.isEmpty() && openLibraryResponse.get("ISBN:" + isbn) instanceof Map) {
+        if (olData != null) {
+            updateFromOpenLibrary(bookInfo, olData);
+        }
+        return bookInfo;
+    }
+
+    /**
+     * Checks whether an ISBN was recently looked up and is unknown to both APIs.
+     *
+     * @param isbn The ISBN to check
+     * @return true if the ISBN is cached as not found
+     */
+    private boolean isKnownNotFound(@NonNull String isbn) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(NOT_FOUND_KEY_PREFIX + isbn));
+    }
+
+    /**
+     * Writes a fetched BookInfo to Redis and refreshes the near cache on all nodes.
+     * A partial BookInfo, missing the answer of a source that failed, never replaces a cached entry
+     * and is otherwise only kept for the negative TTL, so it is fetched again soon.
+     *
+     * @param bookInfo The BookInfo to store
+     * @param complete false if a source failed and the BookInfo may be partial
+     * @return The stored BookInfo, or the given one if a cached entry was left in place
+     */
+    BookInfo cache(@NonNull BookInfo bookInfo, boolean complete) {
+        if (!complete && Boolean.TRUE.equals(redisTemplate.hasKey(BOOK_INFO_KEYSPACE + ":" + bookInfo.getIsbn()))) {
+            return bookInfo;
+        }
+        bookInfo.setTimeToLive(complete ? cacheTtlSeconds : negativeCacheTtlSeconds);
+        bookInfo.setFetchedAt(System.currentTimeMillis());
+        var saved = redisRepository.save(bookInfo);
+        nearCache.update(saved);
+        searchIndex.indexBookInfo(saved);
+        return saved;
+    }
+
+    /**
+     * Keeps a BookInfo read from Redis in the near cache and makes its authors and subjects searchable.
+     *
+     * @param bookInfo The BookInfo read from Redis
+     */
+    void remember(@NonNull BookInfo bookInfo) {
+        nearCache.put(bookInfo);
+        searchIndex.indexBookInfo(bookInfo);
+    }
+
+    /**
+     * Runs a single upstream lookup on the bounded upstream executor, paced by the rate limiter and
+     * guarded by the circuit breaker and bulkhead of the upstream.
+     * A lookup over the rate limit waits for its turn, without holding a thread, for at most
+     * bookinfo.upstream.rate-limit.max-wait-ms. The returned future never completes exceptionally:
+     * failures, timeouts, an open circuit, a full bulkhead, a too long wait for the rate limiter and
+     * rejections by a saturated executor all complete it with an unanswered lookup.
+     * Calls slower than the timeout count as failures of the upstream, even if they answer later.
+     *
+     * @param upstream The upstream to call
+     * @param call     The upstream lookup to run
+     * @return Future holding the lookup result
+     */
+    private <T> CompletableFuture<Lookup<T>> callUpstream(Upstream upstream, Supplier<T> call) {
+        var guard = upstream.guard();
+        // Don't spend a token on a call the circuit would reject anyway
+        if (guard.isOpen()) {
+            return CompletableFuture.completedFuture(Lookup.failed());
+        }
+        long waitNanos = upstream.rateLimiter().reserve(TimeUnit.MILLISECONDS.toNanos(rateLimitMaxWaitMs));
+        if (waitNanos < 0) {
+            return CompletableFuture.completedFuture(Lookup.failed());
+        }
+
+        Supplier<Lookup<T>> guardedCall = () -> {
+            if (!guard.tryAcquire()) {
+                return Lookup.failed();
+            }
+            long start = System.nanoTime();
             try {
+                var value = call.get();
+                guard.release(System.nanoTime() - start <= TimeUnit.MILLISECONDS.toNanos(upstream.timeoutMs()));
+                return new Lookup<>(value, true);
+            } catch (RuntimeException e) {
+                guard.release(false);
+                throw e;
+            }
+        };
+        var executor = waitNanos > 0
+            ? CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, upstreamExecutor)
+            : upstreamExecutor;
+        try {
+            return CompletableFuture.supplyAsync(guardedCall, executor)
+                .completeOnTimeout(Lookup.failed(), TimeUnit.NANOSECONDS.toMillis(waitNanos) + upstream.timeoutMs(),
+                    TimeUnit.MILLISECONDS)
+                .exceptionally(ex -> Lookup.failed());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(Lookup.failed());
+        }
+    }
+
+    /**
+     * Looks up an ISBN at Open Library as part of a multi-ISBN request.
+     * Lookups arriving within batch-linger-ms are bundled into one request of at most batch-size ISBNs,
+     * which costs a single rate limiter token.
+     *
+     * @param isbn The ISBN to look up
+     * @return Future holding the book data of the ISBN, never completes exceptionally
+     */
+    private CompletableFuture<Lookup<Map<String, Object>>> lookupOpenLibrary(String isbn) {
+        OpenLibraryBatch full = null;
+        CompletableFuture<Lookup<Map<String, Object>>> lookup;
+        synchronized (openLibraryBatchLock) {
+            var batch = openLibraryBatch;
+            lookup = batch.lookups.computeIfAbsent(isbn, key -> new CompletableFuture<>());
+            if (batch.lookups.size() >= openLibraryBatchSize) {
+                full = batch;
+                openLibraryBatch = new OpenLibraryBatch();
+            } else if (batch.lookups.size() == 1) {
+                CompletableFuture.delayedExecutor(openLibraryBatchLingerMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> flushOpenLibraryBatch(batch));
+            }
+        }
+        if (full != null) {
+            sendOpenLibraryBatch(full);
+        }
+        return lookup;
+    }
+
+    private void flushOpenLibraryBatch(OpenLibraryBatch batch) {
+        synchronized (openLibraryBatchLock) {
+            // A batch that filled up was already sent
+            if (openLibraryBatch != batch) {
+                return;
+            }
+            openLibraryBatch = new OpenLibraryBatch();
+        }
+        sendOpenLibraryBatch(batch);
+    }
+
+    private void sendOpenLibraryBatch(OpenLibraryBatch batch) {
+        callUpstream(openLibrary, () -> fetchFromOpenLibrary(batch.lookups.keySet()))
+            .thenAccept(result -> batch.lookups.forEach((isbn, lookup) -> lookup.complete(result.answered()
+                ? new Lookup<>(result.value().get(isbn), true)
+                : Lookup.failed())));
+    }
+
+    /**
+     * Queries the Google Books API for the given ISBN.
+     *
+     * @param isbn The ISBN to look up
+     * @return The volume information of the first match, or null if Google Books doesn't know the ISBN
+     */
+    private VolumeInfo fetchFromGoogleBooks(String isbn) {
+        return firstVolume(googleBooks.restTemplate().getForObject(GOOGLE_BOOKS_API + isbn, GoogleBooksResponse.class));
+    }
+
+    /**
+     * @param googleResponse A Google Books API response
+     * @return The volume information of the first match, or null if there is none
+     */
+    static VolumeInfo firstVolume(GoogleBooksResponse googleResponse) {
+        if (googleResponse != null && googleResponse.items != null && !googleResponse.items.isEmpty()) {
+            return googleResponse.items.get(0).volumeInfo;
+        }
+        return null;
+    }
+
+    /**
+     * Queries the Open Library API for several ISBNs with a single request.
+     *
+     * @param isbns The ISBNs to look up
+     * @return The book data by ISBN, ISBNs Open Library doesn't know are missing
+     */
+    private Map<String, Map<String, Object>> fetchFromOpenLibrary(Collection<String> isbns) {
+        var openLibraryResponse = openLibrary.restTemplate().getForObject(OPEN_LIBRARY_API, Map.class, bibkeys(isbns));
+        return booksByIsbn(openLibraryResponse, isbns);
+    }
+
+    /**
+     * @param isbns The ISBNs to look up
+     * @return The bibkeys parameter of an Open Library request for the ISBNs
+     */
+    static String bibkeys(Collection<String> isbns) {
+        return isbns.stream().map(isbn -> "ISBN:" + isbn).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Splits an Open Library multi-ISBN response into the book data of each ISBN.
+     *
+     * @param openLibraryResponse The Open Library API response
+     * @param isbns               The ISBNs that were looked up
+     * @return The book data by ISBN, ISBNs Open Library doesn't know are missing
+     */
+    static Map<String, Map<String, Object>> booksByIsbn(Map<?, ?> openLibraryResponse, Collection<String> isbns) {
+        var books = new HashMap<String, Map<String, Object>>();
+        for (var isbn : isbns) {
+            if (openLibraryResponse != null && openLibraryResponse.get("ISBN:" + isbn) instanceof Map) {
                 @SuppressWarnings("unchecked")
                 Map<String, Object> bookData = (Map<String, Object>) openLibraryResponse.get("ISBN:" + isbn);
-                updateFromOpenLibrary(bookInfo, bookData);
-            } catch (ClassCastException e) {
-                // ...
+                books.put(isbn, bookData);
             }
         }
-        
-        return bookInfo.getTitle() != null ? redisRepository.save(bookInfo) : null;
+        return books;
     }
 
     /**
@@ -185,15 +887,43 @@ public class BookInfoService {
         }
     }
 
-    private static class GoogleBooksResponse {
+    /**
+     * An upstream API with its own pooled HTTP client, circuit breaker and bulkhead.
+     *
+     * @param timeoutMs Time a caller waits for the upstream, also the read timeout of its client
+     */
+    record Upstream(RestTemplate restTemplate, UpstreamGuard guard, UpstreamRateLimiter rateLimiter,
+            long timeoutMs) {
+    }
+
+    /**
+     * Open Library lookups waiting to be sent together, by ISBN.
+     */
+    private static class OpenLibraryBatch {
+        final Map<String, CompletableFuture<Lookup<Map<String, Object>>>> lookups = new LinkedHashMap<>();
+    }
+
+    /**
+     * Result of a single upstream lookup.
+     *
+     * @param value The looked up data, null if the source doesn't know the ISBN or didn't answer
+     * @param answered false if the source failed, timed out or was not called
+     */
+    record Lookup<T>(T value, boolean answered) {
+        static <T> Lookup<T> failed() {
+            return new Lookup<>(null, false);
+        }
+    }
+
+    static class GoogleBooksResponse {
         public java.util.List<Item> items;
     }
     
-    private static class Item {
+    static class Item {
         public VolumeInfo volumeInfo;
     }
     
-    private static class VolumeInfo {
+    static class VolumeInfo {
         public String title;
         public String description;
         public java.util.List<String> authors;
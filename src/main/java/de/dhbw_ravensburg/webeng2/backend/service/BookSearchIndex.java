@@ -0,0 +1,489 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisKeyExpiredEvent;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Book;
+import de.dhbw_ravensburg.webeng2.backend.model.BookInfo;
+
+/**
+ * In-process inverted index over book titles and, where cached, BookInfo authors and subjects.
+ * Books get a dense ordinal, every term maps to a compact posting list of ordinals and weights.
+ * Queries match every token exactly or as prefix and rank the hits by a weighted tf-idf score.
+ * The index is built from Mongo and the BookInfo cache in Redis in the background, kept current
+ * on book writes and BookInfo reads, and rebuilt periodically to drop deleted books and pick up
+ * writes made by other nodes. Authors and subjects are dropped when their BookInfo expires in Redis,
+ * so they match on every node exactly while the BookInfo is cached.
+ */
+@Component
+public class BookSearchIndex extends AbstractMongoEventListener<Book> {
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float AUTHOR_WEIGHT = 2f;
+    private static final float SUBJECT_WEIGHT = 1f;
+    // Score factor for terms that only match as prefix of a query token
+    private static final float PREFIX_FACTOR = 0.5f;
+    private static final int MAX_PREFIX_EXPANSIONS = 500;
+    // BookInfo entries read from Redis per pipeline during a rebuild
+    private static final int INFO_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // BookInfoService indexes the BookInfo it reads, so it can only be used lazily here
+    @Lazy
+    @Autowired
+    private BookInfoService bookInfoService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile Segment segment = new Segment();
+
+    // Updates applied while a rebuild is running, replayed onto the rebuilt segment
+    private List<Consumer<Segment>> pendingUpdates;
+
+    /**
+     * Result of a search.
+     *
+     * @param ids   The IDs of the books on the requested page, best match first
+     * @param total The number of matching books
+     */
+    public record SearchResult(List<String> ids, long total) {
+    }
+
+    private record WeightedTerm(String term, float weight) {
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param text The search text, every token has to match a term exactly or as prefix
+     * @param page The page number
+     * @param size The page size
+     * @return The matching book IDs on the requested page and the total number of matches
+     */
+    public SearchResult search(String text, int page, int size) {
+        if (page < 0 || size < 1) {
+            throw new IllegalArgumentException("Invalid page or size");
+        }
+        List<String> tokens = tokenize(text).stream().distinct().toList();
+        if (tokens.isEmpty()) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            // Matches of all tokens so far, sorted by ordinal
+            Hits matches = null;
+            for (String token : tokens) {
+                Hits tokenHits = segment.score(token);
+                matches = matches == null ? tokenHits : matches.intersect(tokenHits);
+                if (matches.size == 0) {
+                    return new SearchResult(List.of(), 0);
+                }
+            }
+
+            // Best score first, then lowest ordinal. Positive floats sort like their bits
+            long[] ranked = new long[matches.size];
+            for (int i = 0; i < matches.size; i++) {
+                long bits = Float.floatToIntBits(matches.scores[i]);
+                ranked[i] = (Integer.MAX_VALUE - bits) << 32 | matches.docs[i];
+            }
+            Arrays.sort(ranked);
+
+            List<String> ids = new ArrayList<>();
+            long from = (long) page * size;
+            for (long i = from; i < ranked.length && i < from + size; i++) {
+                ids.add(segment.idByOrdinal.get((int) ranked[(int) i]));
+            }
+            return new SearchResult(ids, matches.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces a book in the index.
+     *
+     * @param book The saved book
+     */
+    public void indexBook(@NonNull Book book) {
+        String id = book.getId();
+        String isbn = book.getIsbn();
+        String title = book.getTitle();
+        apply(s -> s.addBook(id, isbn, title));
+    }
+
+    /**
+     * Removes a book from the index.
+     *
+     * @param id The ID of the deleted book
+     */
+    public void removeBook(@NonNull String id) {
+        apply(s -> s.remove(id));
+    }
+
+    /**
+     * Adds the authors and subjects of a BookInfo to the book with the same ISBN, replacing those of
+     * an older BookInfo. Calls with unchanged authors and subjects don't take the write lock.
+     *
+     * @param bookInfo The cached BookInfo
+     */
+    public void indexBookInfo(@NonNull BookInfo bookInfo) {
+        String isbn = bookInfo.getIsbn();
+        List<WeightedTerm> terms = infoTerms(bookInfo);
+        if (terms.equals(segment.infoTerms.get(isbn))) {
+            return;
+        }
+        apply(s -> s.addInfo(isbn, terms));
+    }
+
+    /**
+     * Removes the authors and subjects of an expired BookInfo, on every node.
+     */
+    @EventListener
+    public void onBookInfoExpired(RedisKeyExpiredEvent<?> event) {
+        if (BookInfoService.BOOK_INFO_KEYSPACE.equals(event.getKeyspace())) {
+            String isbn = new String(event.getId(), StandardCharsets.UTF_8);
+            apply(s -> s.removeInfo(isbn));
+        }
+    }
+
+    @Override
+    public void onAfterSave(@NonNull AfterSaveEvent<Book> event) {
+        indexBook(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(@NonNull AfterDeleteEvent<Book> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof ObjectId || id instanceof String) {
+            removeBook(id.toString());
+        }
+    }
+
+    /**
+     * Rebuilds the index from the books collection and the cached BookInfo entries.
+     * Runs at startup and then periodically.
+     */
+    @Scheduled(fixedDelayString = "${books.search-index.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingUpdates = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Segment rebuilt = new Segment();
+        boolean complete = false;
+        try {
+            Query query = new Query();
+            query.fields().include("title", "isbn");
+            try (Stream<Book> books = mongoTemplate.stream(query, Book.class)) {
+                books.forEach(book -> rebuilt.addBook(book.getId(), book.getIsbn(), book.getTitle()));
+            }
+            try {
+                bookInfoService.forEachCachedBookInfo(INFO_CHUNK_SIZE,
+                        bookInfo -> rebuilt.addInfo(bookInfo.getIsbn(), infoTerms(bookInfo)));
+            } catch (RuntimeException e) {
+                // Without Redis keep the authors and subjects known so far
+                Map<String, List<WeightedTerm>> known;
+                lock.readLock().lock();
+                try {
+                    known = new HashMap<>(segment.infoTerms);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                known.forEach(rebuilt::addInfo);
+            }
+            complete = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                // Keep serving the old segment if the rebuild failed
+                if (complete) {
+                    pendingUpdates.forEach(update -> update.accept(rebuilt));
+                    segment = rebuilt;
+                }
+                pendingUpdates = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void apply(Consumer<Segment> update) {
+        lock.writeLock().lock();
+        try {
+            update.accept(segment);
+            if (pendingUpdates != null) {
+                pendingUpdates.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<WeightedTerm> infoTerms(BookInfo bookInfo) {
+        List<WeightedTerm> terms = new ArrayList<>();
+        tokenize(bookInfo.getAuthors()).forEach(term -> terms.add(new WeightedTerm(term, AUTHOR_WEIGHT)));
+        if (bookInfo.getSubjects() != null) {
+            bookInfo.getSubjects().forEach(subject -> tokenize(subject)
+                    .forEach(term -> terms.add(new WeightedTerm(term, SUBJECT_WEIGHT))));
+        }
+        return terms;
+    }
+
+    /**
+     * Splits a text into lower case terms without diacritics.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(normalized.split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .toList();
+    }
+
+    /**
+     * One generation of the index. Deleted or replaced books keep their ordinal
+     * and are only masked out, the next rebuild drops them for good.
+     */
+    private static class Segment {
+        final Map<String, Integer> ordinalById = new HashMap<>();
+        final Map<String, Integer> ordinalByIsbn = new HashMap<>();
+        final List<String> idByOrdinal = new ArrayList<>();
+        final List<String> isbnByOrdinal = new ArrayList<>();
+        final BitSet deleted = new BitSet();
+        final BitSet withInfo = new BitSet();
+        final NavigableMap<String, Postings> postings = new TreeMap<>();
+        // BookInfo terms by ISBN, also of books not indexed yet. Concurrent so it can be checked without the lock
+        final Map<String, List<WeightedTerm>> infoTerms = new ConcurrentHashMap<>();
+
+        void addBook(String id, String isbn, String title) {
+            remove(id);
+            int ordinal = idByOrdinal.size();
+            idByOrdinal.add(id);
+            isbnByOrdinal.add(isbn);
+            ordinalById.put(id, ordinal);
+            if (isbn != null) {
+                ordinalByIsbn.put(isbn, ordinal);
+            }
+            for (String term : tokenize(title)) {
+                postings.computeIfAbsent(term, t -> new Postings()).add(ordinal, TITLE_WEIGHT);
+            }
+            List<WeightedTerm> terms = isbn != null ? infoTerms.get(isbn) : null;
+            if (terms != null) {
+                addInfoPostings(ordinal, terms);
+            }
+        }
+
+        void addInfo(String isbn, List<WeightedTerm> terms) {
+            if (terms.equals(infoTerms.get(isbn))) {
+                return;
+            }
+            removeInfo(isbn);
+            infoTerms.put(isbn, terms);
+            Integer ordinal = ordinalByIsbn.get(isbn);
+            if (ordinal != null) {
+                addInfoPostings(ordinal, terms);
+            }
+        }
+
+        void removeInfo(String isbn) {
+            List<WeightedTerm> terms = infoTerms.remove(isbn);
+            Integer ordinal = ordinalByIsbn.get(isbn);
+            if (terms == null || ordinal == null || !withInfo.get(ordinal)) {
+                return;
+            }
+            withInfo.clear(ordinal);
+            for (WeightedTerm term : terms) {
+                Postings list = postings.get(term.term());
+                if (list != null) {
+                    list.subtract(ordinal, term.weight());
+                    if (list.size == 0) {
+                        postings.remove(term.term());
+                    }
+                }
+            }
+        }
+
+        private void addInfoPostings(int ordinal, List<WeightedTerm> terms) {
+            if (withInfo.get(ordinal)) {
+                return;
+            }
+            withInfo.set(ordinal);
+            for (WeightedTerm term : terms) {
+                postings.computeIfAbsent(term.term(), t -> new Postings()).add(ordinal, term.weight());
+            }
+        }
+
+        void remove(String id) {
+            Integer ordinal = ordinalById.remove(id);
+            if (ordinal != null) {
+                deleted.set(ordinal);
+                String isbn = isbnByOrdinal.get(ordinal);
+                if (isbn != null) {
+                    ordinalByIsbn.remove(isbn, ordinal);
+                }
+            }
+        }
+
+        /**
+         * Scores all live books matching the token exactly or as prefix.
+         * A book matching several terms gets the best of their scores.
+         */
+        Hits score(String token) {
+            // Ordinal in the upper, score bits in the lower half, so sorting groups the scores of a book
+            long[] scored = new long[16];
+            int count = 0;
+            int expansions = 0;
+            for (var entry : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                boolean exact = entry.getKey().equals(token);
+                // The exact term sorts first, so the remaining terms are all further expansions
+                if (!exact && ++expansions > MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                Postings list = entry.getValue();
+                float idf = (float) Math.log(1 + (double) ordinalById.size() / list.size);
+                float factor = exact ? idf : idf * PREFIX_FACTOR;
+                for (int i = 0; i < list.size; i++) {
+                    int ordinal = list.docs[i];
+                    if (!deleted.get(ordinal)) {
+                        if (count == scored.length) {
+                            scored = Arrays.copyOf(scored, count * 2);
+                        }
+                        scored[count++] = (long) ordinal << 32
+                                | Float.floatToIntBits(list.weights[i] * factor) & 0xFFFFFFFFL;
+                    }
+                }
+            }
+            Arrays.sort(scored, 0, count);
+
+            // Positive floats sort like their bits, so the last score of a book is its best
+            Hits hits = new Hits(count);
+            for (int i = 0; i < count; i++) {
+                int ordinal = (int) (scored[i] >>> 32);
+                if (i + 1 < count && (int) (scored[i + 1] >>> 32) == ordinal) {
+                    continue;
+                }
+                hits.add(ordinal, Float.intBitsToFloat((int) scored[i]));
+            }
+            return hits;
+        }
+    }
+
+    /**
+     * Scored books, sorted by ordinal.
+     */
+    private static class Hits {
+        final int[] docs;
+        final float[] scores;
+        int size;
+
+        Hits(int capacity) {
+            docs = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        void add(int doc, float score) {
+            docs[size] = doc;
+            scores[size] = score;
+            size++;
+        }
+
+        /**
+         * @return The books in both hits, with the sum of their scores
+         */
+        Hits intersect(Hits other) {
+            Hits both = new Hits(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (docs[i] < other.docs[j]) {
+                    i++;
+                } else if (docs[i] > other.docs[j]) {
+                    j++;
+                } else {
+                    both.add(docs[i], scores[i] + other.scores[j]);
+                    i++;
+                    j++;
+                }
+            }
+            return both;
+        }
+    }
+
+    /**
+     * Growable parallel arrays of book ordinals and term weights.
+     */
+    private static class Postings {
+        int[] docs = new int[2];
+        float[] weights = new float[2];
+        int size;
+
+        void add(int doc, float weight) {
+            if (size > 0 && docs[size - 1] == doc) {
+                weights[size - 1] += weight;
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = weight;
+            size++;
+        }
+
+        /**
+         * Takes back a weight added for a book, the entry is dropped once nothing is left.
+         */
+        void subtract(int doc, float weight) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (docs[i] != doc) {
+                    continue;
+                }
+                weights[i] -= weight;
+                if (weights[i] <= 1e-6f) {
+                    System.arraycopy(docs, i + 1, docs, i, size - i - 1);
+                    System.arraycopy(weights, i + 1, weights, i, size - i - 1);
+                    size--;
+                }
+                return;
+            }
+        }
+    }
+}
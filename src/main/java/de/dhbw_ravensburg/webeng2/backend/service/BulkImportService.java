@@ -0,0 +1,226 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Book;
+import de.dhbw_ravensburg.webeng2.backend.model.BulkImportResult;
+import de.dhbw_ravensburg.webeng2.backend.model.Library;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Imports books and libraries from newline-delimited JSON.
+ * The input is read line by line and written in unordered bulk upserts of batch-size records, so
+ * memory stays constant however large the import is. Books are keyed by ISBN, libraries by their id
+ * (libraries without id are inserted). Bulk writes bypass the Mongo lifecycle events, so records are
+ * validated here and the search and inventory indexes are updated explicitly.
+ */
+@Service
+public class BulkImportService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private LibraryInventoryIndex inventoryIndex;
+
+    @Autowired
+    private BookInfoEnrichmentQueue enrichmentQueue;
+
+    @Autowired
+    private LibraryInventoryStore inventoryStore;
+
+    @Value("${bulk-import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${bulk-import.max-reported-failures:1000}")
+    private int maxReportedFailures;
+
+    /**
+     * Imports books, existing books with the same ISBN are updated.
+     *
+     * @param input One JSON book per line
+     * @return The number of imported records and the failed records
+     */
+    public BulkImportResult importBooks(InputStream input) throws IOException {
+        return importRecords(input, Book.class, Book::getIsbn, this::writeBooks);
+    }
+
+    /**
+     * Imports libraries including their inventories, existing libraries with the same id are updated.
+     *
+     * @param input One JSON library per line
+     * @return The number of imported records and the failed records
+     */
+    public BulkImportResult importLibraries(InputStream input) throws IOException {
+        return importRecords(input, Library.class, library -> {
+            if (library.getId() == null) {
+                library.setId(new ObjectId().toHexString());
+            }
+            return library.getId();
+        }, this::writeLibraries);
+    }
+
+    private interface BatchWriter<T> {
+        void write(List<Record<T>> batch, BulkImportResult result);
+    }
+
+    private record Record<T>(long line, T value) {
+    }
+
+    private <T> BulkImportResult importRecords(InputStream input, Class<T> type, Function<T, String> key,
+            BatchWriter<T> writer) throws IOException {
+        BulkImportResult result = new BulkImportResult();
+        Map<String, Record<T>> batch = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long line = 0;
+        String json;
+        while ((json = reader.readLine()) != null) {
+            line++;
+            if (json.isBlank()) {
+                continue;
+            }
+            result.addReceived();
+
+            T value;
+            try {
+                value = objectMapper.readValue(json, type);
+            } catch (JsonProcessingException e) {
+                result.addFailure(line, "Invalid JSON: " + e.getOriginalMessage(), maxReportedFailures);
+                continue;
+            }
+            Set<ConstraintViolation<T>> violations = value != null ? validator.validate(value) : Set.of();
+            if (value == null || !violations.isEmpty()) {
+                result.addFailure(line, value == null ? "Empty record" : violations.stream()
+                        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                        .reduce((a, b) -> a + ", " + b).orElse(""), maxReportedFailures);
+                continue;
+            }
+
+            String id = key.apply(value);
+            // Unordered upserts of the same key in one batch would race, the later record goes into the next batch
+            if (batch.containsKey(id) || batch.size() >= batchSize) {
+                writer.write(new ArrayList<>(batch.values()), result);
+                batch.clear();
+            }
+            batch.put(id, new Record<>(line, value));
+        }
+        if (!batch.isEmpty()) {
+            writer.write(new ArrayList<>(batch.values()), result);
+        }
+        return result;
+    }
+
+    private void writeBooks(List<Record<Book>> batch, BulkImportResult result) {
+        BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Book.class);
+        for (Record<Book> record : batch) {
+            operations.upsert(new Query(Criteria.where("isbn").is(record.value().getIsbn())),
+                    toUpdate(record.value()));
+        }
+        Set<Integer> failed = execute(operations, batch, result);
+
+        // Upserts don't return the ids of updated books, read the batch back to index it
+        List<String> isbns = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!failed.contains(i)) {
+                isbns.add(batch.get(i).value().getIsbn());
+            }
+        }
+        mongoTemplate.find(new Query(Criteria.where("isbn").in(isbns)), Book.class).forEach(searchIndex::indexBook);
+        isbns.forEach(enrichmentQueue::enqueue);
+    }
+
+    private void writeLibraries(List<Record<Library>> batch, BulkImportResult result) {
+        BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Library.class);
+        for (Record<Library> record : batch) {
+            Library library = record.value();
+            Update update = toUpdate(library);
+            if (inventoryStore.isBucketed()) {
+                update.set("isbnList", List.of());
+            }
+            operations.upsert(new Query(Criteria.where("id").is(library.getId())), update);
+        }
+        Set<Integer> failed = execute(operations, batch, result);
+
+        Map<String, List<String>> inventories = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!failed.contains(i)) {
+                Library library = batch.get(i).value();
+                inventories.put(library.getId(), library.getIsbnList());
+            }
+        }
+        inventoryStore.replaceInventories(inventories);
+        for (int i = 0; i < batch.size(); i++) {
+            if (!failed.contains(i)) {
+                inventoryIndex.indexLibrary(batch.get(i).value());
+            }
+        }
+    }
+
+    /**
+     * Runs the bulk write and reports the records it rejected.
+     *
+     * @return The batch indexes of the rejected records
+     */
+    private <T> Set<Integer> execute(BulkOperations operations, List<Record<T>> batch, BulkImportResult result) {
+        Set<Integer> failed = new HashSet<>();
+        try {
+            operations.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                failed.add(error.getIndex());
+                result.addFailure(batch.get(error.getIndex()).line(), error.getMessage(), maxReportedFailures);
+            }
+        }
+        result.addImported(batch.size() - failed.size());
+        return failed;
+    }
+
+    private Update toUpdate(Object value) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(value, document);
+        document.remove("_id");
+        document.remove("version");
+        Update update = new Update();
+        document.forEach(update::set);
+        // Imports count as a change, editors holding an older version get a conflict
+        return update.inc("version", 1);
+    }
+}
@@ -0,0 +1,90 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Book;
+import de.dhbw_ravensburg.webeng2.backend.model.Library;
+
+/**
+ * Writes the whole catalog as newline-delimited JSON.
+ * Documents are read from a Mongo cursor (or a Redis scan for BookInfo) and written straight to the
+ * output stream, so memory use does not depend on the collection size. A slow client blocks the write,
+ * which in turn stops the cursor from fetching further batches.
+ */
+@Service
+public class CatalogExportService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibraryInventoryStore inventoryStore;
+
+    @Autowired
+    private BookInfoService bookInfoService;
+
+    @Value("${export.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Writes all books, one JSON book per line.
+     */
+    public void exportBooks(OutputStream output) throws IOException {
+        try (SequenceWriter writer = ndjsonWriter(output);
+                Stream<Book> books = mongoTemplate.stream(new Query().cursorBatchSize(batchSize), Book.class)) {
+            books.forEach(book -> write(writer, book));
+        }
+    }
+
+    /**
+     * Writes all libraries including their inventories, one JSON library per line.
+     */
+    public void exportLibraries(OutputStream output) throws IOException {
+        try (SequenceWriter writer = ndjsonWriter(output);
+                Stream<Library> libraries = mongoTemplate.stream(new Query().cursorBatchSize(batchSize),
+                        Library.class)) {
+            libraries.forEach(library -> write(writer, inventoryStore.loadInventory(library)));
+        }
+    }
+
+    /**
+     * Writes all cached BookInfo entries, one JSON entry per line.
+     */
+    public void exportBookInfos(OutputStream output) throws IOException {
+        try (SequenceWriter writer = ndjsonWriter(output)) {
+            bookInfoService.forEachCachedBookInfo(batchSize, bookInfo -> write(writer, bookInfo));
+        }
+    }
+
+    private SequenceWriter ndjsonWriter(OutputStream output) throws IOException {
+        // The servlet container owns the response stream, closing the writer only flushes it
+        return objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(output);
+    }
+
+    private static void write(SequenceWriter writer, Object value) {
+        try {
+            writer.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Library;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryDTO;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryInventoryBucket;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryMatchDTO;
+
+/**
+ * In-memory inverted index from ISBN to the libraries stocking it.
+ * Libraries get a dense ordinal and every ISBN maps to a sorted array of the ordinals stocking it,
+ * so availability lookups never touch Mongo. The index is built from Mongo in the background,
+ * kept current on library writes, and rebuilt periodically.
+ * Every change is published on a Redis channel, so the other nodes apply it as well. Changes missed
+ * while Redis was unavailable are picked up by the next rebuild.
+ */
+@Component
+public class LibraryInventoryIndex extends AbstractMongoEventListener<Library> implements MessageListener {
+    public static final String CHANGE_CHANNEL = "Library:inventory";
+
+    // Identifies this node so it can ignore its own change messages
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Segment segment = new Segment();
+
+    // Set once the first build completed, until then callers have to ask Mongo
+    private volatile boolean ready;
+
+    // Updates applied while a rebuild is running, replayed onto the rebuilt segment
+    private List<Consumer<Segment>> pendingUpdates;
+
+    /**
+     * @return true once the index has been built and can answer lookups
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Finds all libraries stocking a book.
+     *
+     * @param isbn The ISBN of the book
+     * @return The libraries stocking the book, nearest first
+     */
+    public List<LibraryDTO> findHolding(@NonNull String isbn) {
+        lock.readLock().lock();
+        try {
+            Postings holders = segment.holders(isbn);
+            List<LibraryDTO> libraries = new ArrayList<>(holders.size);
+            for (int i = 0; i < holders.size; i++) {
+                libraries.add(segment.libraries.get(holders.ordinals[i]));
+            }
+            libraries.sort(Comparator.comparingDouble(LibraryDTO::getDistance));
+            return libraries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the libraries stocking at least some books of a reading list.
+     * If all books are required the posting lists are intersected, otherwise the holders of every book are counted.
+     *
+     * @param isbns      The ISBNs on the reading list
+     * @param minMatches The minimum number of books a library has to stock
+     * @return The matching libraries, the ones stocking most books first, then nearest first
+     */
+    public List<LibraryMatchDTO> findHoldingMost(@NonNull Collection<String> isbns, int minMatches) {
+        List<String> distinct = isbns.stream().distinct().toList();
+        int required = Math.max(1, Math.min(minMatches, distinct.size()));
+
+        lock.readLock().lock();
+        try {
+            List<Postings> holders = distinct.stream().map(segment::holders).toList();
+            BitSet candidates = new BitSet(segment.libraries.size());
+            if (required == distinct.size()) {
+                // Intersect starting with the shortest list, every other list is only probed
+                Postings shortest = holders.stream().min(Comparator.comparingInt(postings -> postings.size)).get();
+                for (int i = 0; i < shortest.size; i++) {
+                    int ordinal = shortest.ordinals[i];
+                    if (holders.stream().allMatch(postings -> postings.contains(ordinal))) {
+                        candidates.set(ordinal);
+                    }
+                }
+            } else {
+                int[] counts = new int[segment.libraries.size()];
+                for (Postings postings : holders) {
+                    for (int i = 0; i < postings.size; i++) {
+                        if (++counts[postings.ordinals[i]] == required) {
+                            candidates.set(postings.ordinals[i]);
+                        }
+                    }
+                }
+            }
+
+            List<LibraryMatchDTO> matches = new ArrayList<>(candidates.cardinality());
+            candidates.stream().forEach(ordinal -> {
+                LibraryDTO library = segment.libraries.get(ordinal);
+                List<String> matched = new ArrayList<>();
+                for (int i = 0; i < distinct.size(); i++) {
+                    if (holders.get(i).contains(ordinal)) {
+                        matched.add(distinct.get(i));
+                    }
+                }
+                matches.add(new LibraryMatchDTO(library.getId(), library.getName(), library.getDistance(), matched));
+            });
+            matches.sort(Comparator.comparingInt(LibraryMatchDTO::getMatchCount).reversed()
+                    .thenComparingDouble(LibraryMatchDTO::getDistance));
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces a library in the index.
+     *
+     * @param library The saved library including its inventory
+     */
+    public void indexLibrary(@NonNull Library library) {
+        LibraryDTO dto = new LibraryDTO(library.getId(), library.getName(), library.getDistance());
+        List<String> isbns = library.getIsbnList() != null ? List.copyOf(library.getIsbnList()) : List.of();
+        apply(s -> s.addLibrary(dto, isbns));
+        // The inventory may be too large for a message, other nodes reload the library
+        publish("library", library.getId(), List.of());
+    }
+
+    /**
+     * Adds books to the inventory of an indexed library.
+     *
+     * @param id    The ID of the library
+     * @param isbns The ISBNs added to its inventory
+     */
+    public void addIsbns(@NonNull String id, @NonNull Collection<String> isbns) {
+        List<String> added = List.copyOf(isbns);
+        apply(s -> s.setHolder(id, added, true));
+        publish("add", id, added);
+    }
+
+    /**
+     * Removes books from the inventory of an indexed library.
+     *
+     * @param id    The ID of the library
+     * @param isbns The ISBNs removed from its inventory
+     */
+    public void removeIsbns(@NonNull String id, @NonNull Collection<String> isbns) {
+        List<String> removed = List.copyOf(isbns);
+        apply(s -> s.setHolder(id, removed, false));
+        publish("remove", id, removed);
+    }
+
+    /**
+     * Removes a library from the index.
+     *
+     * @param id The ID of the deleted library
+     */
+    public void removeLibrary(@NonNull String id) {
+        apply(s -> s.remove(id));
+        publish("delete", id, List.of());
+    }
+
+    @Override
+    public void onAfterSave(@NonNull AfterSaveEvent<Library> event) {
+        indexLibrary(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(@NonNull AfterDeleteEvent<Library> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof ObjectId || id instanceof String) {
+            removeLibrary(id.toString());
+        }
+    }
+
+    /**
+     * Applies changes published by other nodes.
+     */
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        // nodeId:type:libraryId:isbn,isbn,...
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":", 4);
+        if (parts.length < 4 || parts[0].equals(nodeId)) {
+            return;
+        }
+        String id = parts[2];
+        List<String> isbns = parts[3].isEmpty() ? List.of() : List.of(parts[3].split(","));
+        switch (parts[1]) {
+            case "library" -> reloadLibrary(id);
+            case "add" -> apply(s -> s.setHolder(id, isbns, true));
+            case "remove" -> apply(s -> s.setHolder(id, isbns, false));
+            case "delete" -> apply(s -> s.remove(id));
+            default -> {
+            }
+        }
+    }
+
+    private void reloadLibrary(String id) {
+        Library library = mongoTemplate.findById(id, Library.class);
+        if (library == null) {
+            apply(s -> s.remove(id));
+            return;
+        }
+        LibraryDTO dto = new LibraryDTO(library.getId(), library.getName(), library.getDistance());
+        List<String> isbns = new ArrayList<>(library.getIsbnList() != null ? library.getIsbnList() : List.of());
+        // Inventories kept in buckets by the bucketed storage layout
+        mongoTemplate.find(new Query(Criteria.where("libraryId").is(id)), LibraryInventoryBucket.class)
+                .forEach(bucket -> isbns.addAll(bucket.getIsbns()));
+        apply(s -> s.addLibrary(dto, isbns));
+    }
+
+    private void publish(String type, String id, List<String> isbns) {
+        try {
+            redisTemplate.convertAndSend(CHANGE_CHANNEL, nodeId + ":" + type + ":" + id + ":" + String.join(",", isbns));
+        } catch (RuntimeException e) {
+            // The write already succeeded, other nodes pick it up with their next rebuild
+        }
+    }
+
+    /**
+     * Rebuilds the index from the libraries collection. Runs at startup and then periodically.
+     */
+    @Scheduled(fixedDelayString = "${libraries.inventory-index.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingUpdates = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Segment rebuilt = new Segment();
+        boolean complete = false;
+        try {
+            try (Stream<Library> libraries = mongoTemplate.stream(new Query(), Library.class)) {
+                libraries.forEach(library -> rebuilt.addLibrary(
+                        new LibraryDTO(library.getId(), library.getName(), library.getDistance()),
+                        library.getIsbnList() != null ? library.getIsbnList() : List.of()));
+            }
+            // Inventories kept in buckets by the bucketed storage layout
+            try (Stream<LibraryInventoryBucket> buckets = mongoTemplate.stream(new Query(),
+                    LibraryInventoryBucket.class)) {
+                buckets.forEach(bucket -> rebuilt.setHolder(bucket.getLibraryId(), bucket.getIsbns(), true));
+            }
+            complete = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                // Keep serving the old segment if the rebuild failed
+                if (complete) {
+                    pendingUpdates.forEach(update -> update.accept(rebuilt));
+                    segment = rebuilt;
+                    ready = true;
+                }
+                pendingUpdates = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void apply(Consumer<Segment> update) {
+        lock.writeLock().lock();
+        try {
+            update.accept(segment);
+            if (pendingUpdates != null) {
+                pendingUpdates.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * One generation of the index. A replaced library keeps its ordinal, the ordinal of a deleted
+     * library is reused by the next new one, so ordinals stay dense between rebuilds.
+     */
+    private static class Segment {
+        private static final String[] NO_ISBNS = new String[0];
+
+        final Map<String, Integer> ordinalById = new HashMap<>();
+        // null for free ordinals
+        final List<LibraryDTO> libraries = new ArrayList<>();
+        // The sorted ISBNs every library is listed under, to take them back on replace and delete
+        final List<String[]> inventories = new ArrayList<>();
+        final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+        final Map<String, Postings> postings = new HashMap<>();
+
+        void addLibrary(LibraryDTO library, List<String> isbns) {
+            Integer ordinal = ordinalById.get(library.getId());
+            if (ordinal != null) {
+                clearInventory(ordinal);
+            } else if (!freeOrdinals.isEmpty()) {
+                ordinal = freeOrdinals.pop();
+            } else {
+                ordinal = libraries.size();
+                libraries.add(null);
+                inventories.add(NO_ISBNS);
+            }
+            libraries.set(ordinal, library);
+            ordinalById.put(library.getId(), ordinal);
+            setHolder(ordinal, isbns, true);
+        }
+
+        void setHolder(String id, List<String> isbns, boolean holds) {
+            Integer ordinal = ordinalById.get(id);
+            if (ordinal != null) {
+                setHolder(ordinal, isbns, holds);
+            }
+        }
+
+        private void setHolder(int ordinal, List<String> isbns, boolean holds) {
+            String[] inventory = inventories.get(ordinal);
+            Set<String> changed = new HashSet<>(isbns);
+            changed.removeIf(isbn -> Arrays.binarySearch(inventory, isbn) >= 0 == holds);
+            if (changed.isEmpty()) {
+                return;
+            }
+            if (holds) {
+                changed.forEach(isbn -> postings.computeIfAbsent(isbn, i -> new Postings()).add(ordinal));
+                String[] added = Arrays.copyOf(inventory, inventory.length + changed.size());
+                int i = inventory.length;
+                for (String isbn : changed) {
+                    added[i++] = isbn;
+                }
+                // Mostly sorted already, so this is close to a merge
+                Arrays.sort(added);
+                inventories.set(ordinal, added);
+            } else {
+                changed.forEach(isbn -> removePosting(isbn, ordinal));
+                inventories.set(ordinal, Arrays.stream(inventory).filter(isbn -> !changed.contains(isbn))
+                        .toArray(String[]::new));
+            }
+        }
+
+        void remove(String id) {
+            Integer ordinal = ordinalById.remove(id);
+            if (ordinal != null) {
+                clearInventory(ordinal);
+                libraries.set(ordinal, null);
+                freeOrdinals.push(ordinal);
+            }
+        }
+
+        private void clearInventory(int ordinal) {
+            for (String isbn : inventories.get(ordinal)) {
+                removePosting(isbn, ordinal);
+            }
+            inventories.set(ordinal, NO_ISBNS);
+        }
+
+        private void removePosting(String isbn, int ordinal) {
+            Postings holders = postings.get(isbn);
+            if (holders != null) {
+                holders.remove(ordinal);
+                if (holders.size == 0) {
+                    postings.remove(isbn);
+                }
+            }
+        }
+
+        /**
+         * @return The libraries stocking the ISBN, must not be modified
+         */
+        Postings holders(String isbn) {
+            return postings.getOrDefault(isbn, Postings.EMPTY);
+        }
+    }
+
+    /**
+     * Growable sorted array of library ordinals.
+     */
+    private static class Postings {
+        static final Postings EMPTY = new Postings();
+
+        int[] ordinals = new int[2];
+        int size;
+
+        boolean contains(int ordinal) {
+            return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+        }
+
+        void add(int ordinal) {
+            int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            System.arraycopy(ordinals, index, ordinals, index + 1, size - index);
+            ordinals[index] = ordinal;
+            size++;
+        }
+
+        void remove(int ordinal) {
+            int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index >= 0) {
+                System.arraycopy(ordinals, index + 1, ordinals, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+}
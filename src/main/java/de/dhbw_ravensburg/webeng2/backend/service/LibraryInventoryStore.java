@@ -0,0 +1,339 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import de.dhbw_ravensburg.webeng2.backend.model.Library;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryDTO;
+import de.dhbw_ravensburg.webeng2.backend.model.LibraryInventoryBucket;
+import de.dhbw_ravensburg.webeng2.backend.repos.LibraryRepository;
+
+/**
+ * Reads and writes library inventories in the configured storage layout.
+ * With "embedded" storage the inventory is the isbnList of the library document.
+ * With "bucketed" storage the library document keeps an empty isbnList and the inventory is split
+ * into LibraryInventoryBucket documents of at most bucket-size ISBNs, so library documents stay small
+ * and the inventory size is not limited by the Mongo document size.
+ * All inventory writes also update the LibraryInventoryIndex.
+ */
+@Service
+public class LibraryInventoryStore {
+
+    @Autowired
+    private LibraryRepository repository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private LibraryInventoryIndex inventoryIndex;
+
+    @Value("${libraries.inventory.storage:embedded}")
+    private String storage;
+
+    @Value("${libraries.inventory.bucket-size:1000}")
+    private int bucketSize;
+
+    /**
+     * @return true if inventories are stored in buckets
+     */
+    public boolean isBucketed() {
+        return "bucketed".equals(storage);
+    }
+
+    /**
+     * Saves a library including its inventory.
+     *
+     * @param library The library to save
+     * @return The saved library including its inventory
+     */
+    public Library save(@NonNull Library library) {
+        if (!isBucketed()) {
+            return repository.save(library);
+        }
+        List<String> isbns = library.getIsbnList() != null ? library.getIsbnList() : List.of();
+        library.setIsbnList(new ArrayList<>());
+        Library saved = repository.save(library);
+
+        mongoTemplate.remove(byLibrary(saved.getId()), LibraryInventoryBucket.class);
+        mongoTemplate.insertAll(toBuckets(saved.getId(), new ArrayList<>(new LinkedHashSet<>(isbns))));
+
+        saved.setIsbnList(isbns);
+        inventoryIndex.indexLibrary(saved);
+        return saved;
+    }
+
+    /**
+     * Replaces the inventories of libraries whose documents were already written, used by bulk imports.
+     * With embedded storage the inventories are part of the written documents and nothing is left to do.
+     *
+     * @param isbnsById The complete inventory of every library by library ID
+     */
+    public void replaceInventories(@NonNull Map<String, List<String>> isbnsById) {
+        if (!isBucketed() || isbnsById.isEmpty()) {
+            return;
+        }
+        mongoTemplate.remove(new Query(Criteria.where("libraryId").in(isbnsById.keySet())),
+                LibraryInventoryBucket.class);
+        List<LibraryInventoryBucket> buckets = new ArrayList<>();
+        isbnsById.forEach((id, isbns) -> buckets.addAll(toBuckets(id, new ArrayList<>(new LinkedHashSet<>(isbns)))));
+        mongoTemplate.insertAll(buckets);
+    }
+
+    /**
+     * Updates a library including its inventory, see {@link LibraryRepository#updateVersioned}.
+     *
+     * @param id      The ID of the library
+     * @param version The version the caller has seen
+     * @param changes The new name, location and inventory
+     * @return The updated library including its inventory, null if no library with the id (and version) exists
+     */
+    public Library update(@NonNull String id, long version, @NonNull Library changes) {
+        Library updated = repository.updateVersioned(id, version, changes, !isBucketed());
+        if (updated == null) {
+            return null;
+        }
+        if (isBucketed()) {
+            replaceInventories(Map.of(id, changes.getIsbnList()));
+            updated.setIsbnList(changes.getIsbnList());
+        }
+        // findAndModify bypasses the Mongo lifecycle events
+        inventoryIndex.indexLibrary(updated);
+        return updated;
+    }
+
+    /**
+     * Deletes a library including its inventory.
+     *
+     * @param id      The ID of the library
+     * @param version The version the caller has seen
+     * @return The deleted library, null if no library with the id (and version) exists
+     */
+    public Library delete(@NonNull String id, long version) {
+        Library deleted = repository.deleteVersioned(id, version);
+        if (deleted != null) {
+            deleteInventory(id);
+            inventoryIndex.removeLibrary(id);
+        }
+        return deleted;
+    }
+
+    /**
+     * Fills in the inventory of a library that was loaded from the repository.
+     *
+     * @param library The loaded library
+     * @return The same library including its inventory
+     */
+    public Library loadInventory(@NonNull Library library) {
+        if (isBucketed()) {
+            Set<String> isbns = library.getIsbnList() != null ? new LinkedHashSet<>(library.getIsbnList())
+                    : new LinkedHashSet<>();
+            // Concurrent adds may have stocked an ISBN in two buckets, see addToBuckets
+            try (Stream<LibraryInventoryBucket> buckets = mongoTemplate.stream(byLibrary(library.getId()),
+                    LibraryInventoryBucket.class)) {
+                buckets.forEach(bucket -> isbns.addAll(bucket.getIsbns()));
+            }
+            library.setIsbnList(new ArrayList<>(isbns));
+        }
+        return library;
+    }
+
+    /**
+     * Adds ISBNs to the inventory of a library without rewriting the whole inventory.
+     *
+     * @param id    The ID of the library
+     * @param isbns The ISBNs to add
+     * @return false if the library does not exist
+     */
+    public boolean addIsbns(@NonNull String id, @NonNull Collection<String> isbns) {
+        if (!isBucketed()) {
+            if (!repository.addIsbns(id, isbns)) {
+                return false;
+            }
+        } else {
+            if (!incrementVersion(id)) {
+                return false;
+            }
+            addToBuckets(id, isbns);
+        }
+        inventoryIndex.addIsbns(id, isbns);
+        return true;
+    }
+
+    /**
+     * Removes ISBNs from the inventory of a library without rewriting the whole inventory.
+     *
+     * @param id    The ID of the library
+     * @param isbns The ISBNs to remove
+     * @return false if the library does not exist
+     */
+    public boolean removeIsbns(@NonNull String id, @NonNull Collection<String> isbns) {
+        if (!isBucketed()) {
+            if (!repository.removeIsbns(id, isbns)) {
+                return false;
+            }
+        } else {
+            if (!incrementVersion(id)) {
+                return false;
+            }
+            mongoTemplate.updateMulti(byLibrary(id).addCriteria(Criteria.where("isbns").in(isbns)),
+                    new Update().pullAll("isbns", isbns.toArray()), LibraryInventoryBucket.class);
+            mongoTemplate.remove(byLibrary(id).addCriteria(Criteria.where("isbns").size(0)),
+                    LibraryInventoryBucket.class);
+        }
+        inventoryIndex.removeIsbns(id, isbns);
+        return true;
+    }
+
+    /**
+     * Bumps the version of a library whose bucketed inventory is about to change, so a concurrent
+     * versioned update based on the old inventory fails instead of overwriting the change.
+     *
+     * @param id The ID of the library
+     * @return false if the library does not exist
+     */
+    private boolean incrementVersion(String id) {
+        return mongoTemplate.updateFirst(byId(id), new Update().inc("version", 1), Library.class)
+                .getMatchedCount() > 0;
+    }
+
+    /**
+     * Deletes the inventory of a deleted library.
+     *
+     * @param id The ID of the library
+     */
+    public void deleteInventory(@NonNull String id) {
+        if (isBucketed()) {
+            mongoTemplate.remove(byLibrary(id), LibraryInventoryBucket.class);
+        }
+    }
+
+    /**
+     * Finds the libraries stocking a book.
+     *
+     * @param isbn     The ISBN of the book
+     * @param pageable The requested page
+     * @return The requested page of libraries stocking the book, without inventories
+     */
+    public Page<LibraryDTO> findHolding(@NonNull String isbn, Pageable pageable) {
+        if (!isBucketed()) {
+            return repository.findProjectedByIsbnListContaining(isbn, pageable);
+        }
+        List<String> ids = mongoTemplate.findDistinct(new Query(Criteria.where("isbns").is(isbn)), "libraryId",
+                LibraryInventoryBucket.class, String.class);
+        return repository.findProjectedByIdIn(ids, pageable);
+    }
+
+    /**
+     * Finds the libraries stocking a book, nearest first.
+     *
+     * @param isbn     The ISBN of the book
+     * @param location The location of the caller
+     * @param radiusKm The maximum distance in kilometers, null for no limit
+     * @param pageable The requested page
+     * @return The requested page of libraries stocking the book, with their distance from the location
+     */
+    public Page<LibraryDTO> findHoldingNear(@NonNull String isbn, @NonNull GeoJsonPoint location, Double radiusKm,
+            Pageable pageable) {
+        Criteria filter;
+        if (inventoryIndex.isReady()) {
+            filter = idIn(inventoryIndex.findHolding(isbn).stream().map(LibraryDTO::getId).toList());
+        } else if (!isBucketed()) {
+            filter = Criteria.where("isbnList").is(isbn);
+        } else {
+            filter = idIn(mongoTemplate.findDistinct(new Query(Criteria.where("isbns").is(isbn)), "libraryId",
+                    LibraryInventoryBucket.class, String.class));
+        }
+        return repository.findNear(location, radiusKm, filter, pageable);
+    }
+
+    /**
+     * Moves embedded inventories into buckets when bucketed storage is enabled on an existing database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateEmbeddedInventories() {
+        if (!isBucketed()) {
+            return;
+        }
+        Query embedded = new Query(Criteria.where("isbnList.0").exists(true));
+        try (Stream<Library> libraries = mongoTemplate.stream(embedded, Library.class)) {
+            libraries.forEach(library -> {
+                addToBuckets(library.getId(), library.getIsbnList());
+                mongoTemplate.updateFirst(byId(library.getId()), new Update().set("isbnList", List.of()),
+                        Library.class);
+            });
+        }
+    }
+
+    /**
+     * Appends ISBNs not yet stocked to buckets that have room left, creating new buckets as needed.
+     * $addToSet keeps a bucket free of duplicates, also when concurrent adds of the same ISBN both
+     * found it missing, as they usually pick the same bucket. Only if they end up in different buckets
+     * (one of them just filled up) an ISBN is stocked twice. Readers therefore treat the buckets of a
+     * library as a set, and removing an ISBN pulls it from all buckets.
+     */
+    private void addToBuckets(String id, Collection<String> isbns) {
+        Set<String> missing = new LinkedHashSet<>(isbns);
+        Query stocked = byLibrary(id).addCriteria(Criteria.where("isbns").in(isbns));
+        stocked.fields().include("isbns");
+        Set<String> present = new HashSet<>();
+        mongoTemplate.find(stocked, LibraryInventoryBucket.class).forEach(bucket -> present.addAll(bucket.getIsbns()));
+        missing.removeAll(present);
+
+        for (LibraryInventoryBucket chunk : toBuckets(id, new ArrayList<>(missing))) {
+            // A bucket has room for the chunk if it has no element at index bucketSize - chunk size
+            Query withRoom = byLibrary(id)
+                    .addCriteria(Criteria.where("isbns." + (bucketSize - chunk.getIsbns().size())).exists(false));
+            Update add = new Update().addToSet("isbns").each(chunk.getIsbns().toArray());
+            if (mongoTemplate.updateFirst(withRoom, add, LibraryInventoryBucket.class).getMatchedCount() == 0) {
+                mongoTemplate.insert(chunk);
+            }
+        }
+    }
+
+    private List<LibraryInventoryBucket> toBuckets(String id, List<String> isbns) {
+        List<LibraryInventoryBucket> buckets = new ArrayList<>();
+        for (int start = 0; start < isbns.size(); start += bucketSize) {
+            List<String> chunk = new ArrayList<>(isbns.subList(start, Math.min(start + bucketSize, isbns.size())));
+            buckets.add(new LibraryInventoryBucket(id, chunk));
+        }
+        return buckets;
+    }
+
+    private static Query byLibrary(String id) {
+        return new Query(Criteria.where("libraryId").is(id));
+    }
+
+    private static Query byId(String id) {
+        return new Query(Criteria.where("id").is(id));
+    }
+
+    private static Criteria idIn(Collection<String> ids) {
+        // $geoNear filters are not mapped, so the ids have to be converted like the repository stores them
+        return Criteria.where("_id").in(ids.stream()
+                .map(id -> ObjectId.isValid(id) ? (Object) new ObjectId(id) : id)
+                .toList());
+    }
+
+}
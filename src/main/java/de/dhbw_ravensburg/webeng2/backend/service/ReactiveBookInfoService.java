@@ -0,0 +1,365 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import de.dhbw_ravensburg.webeng2.backend.model.BookInfo;
+import de.dhbw_ravensburg.webeng2.backend.service.BookInfoService.GoogleBooksResponse;
+import de.dhbw_ravensburg.webeng2.backend.service.BookInfoService.Lookup;
+import de.dhbw_ravensburg.webeng2.backend.service.BookInfoService.Upstream;
+import de.dhbw_ravensburg.webeng2.backend.service.BookInfoService.VolumeInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking variant of {@link BookInfoService} for the reactive API.
+ * Redis is read with the reactive Lettuce client and both APIs are called with WebClients, so a lookup
+ * holds no thread while it waits, and a small event loop pool serves many concurrent lookups.
+ * It shares the near cache, the Redis entries, the circuit breakers, bulkheads and rate limiters with
+ * {@link BookInfoService}, so both variants together stay within the limits of the upstream APIs.
+ * Fetched entries are stored through the blocking Redis repository on the bounded elastic scheduler,
+ * which keeps its secondary data (set of cached ISBNs, expiry copies) exactly as the MVC path writes it.
+ */
+@Service
+public class ReactiveBookInfoService {
+
+    @Autowired
+    private BookInfoService bookInfoService;
+
+    @Autowired
+    private BookInfoNearCache nearCache;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, byte[]> reactiveBookInfoRedisTemplate;
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Autowired
+    private UpstreamHttpClients httpClients;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookinfo.upstream.google-books.base-url:https://www.googleapis.com}")
+    private String googleBooksBaseUrl;
+
+    @Value("${bookinfo.upstream.open-library.base-url:https://openlibrary.org}")
+    private String openLibraryBaseUrl;
+
+    @Value("${bookinfo.upstream.google-books.max-connections:8}")
+    private int googleBooksMaxConnections;
+
+    @Value("${bookinfo.upstream.open-library.max-connections:8}")
+    private int openLibraryMaxConnections;
+
+    @Value("${bookinfo.upstream.open-library.batch-size:20}")
+    private int openLibraryBatchSize;
+
+    @Value("${bookinfo.upstream.open-library.batch-linger-ms:20}")
+    private long openLibraryBatchLingerMs;
+
+    @Value("${bookinfo.upstream.rate-limit.max-wait-ms:2000}")
+    private long rateLimitMaxWaitMs;
+
+    @Value("${bookinfo.cache.negative-ttl-seconds:600}")
+    private long negativeCacheTtlSeconds;
+
+    private WebClient googleBooksClient;
+    private WebClient openLibraryClient;
+
+    // Open Library lookups, bundled into multi-ISBN requests
+    private final Sinks.Many<OpenLibraryLookup> openLibraryLookups = Sinks.many().unicast().onBackpressureBuffer();
+    private Disposable openLibraryBatches;
+
+    // Upstream fetches currently running, keyed by ISBN
+    private final Map<String, Mono<BookInfo>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter coalescedRequests;
+
+    @PostConstruct
+    private void start() {
+        // Same meter as the blocking variant, both count into it
+        coalescedRequests = Counter.builder("bookinfo.fetch.coalesced")
+            .description("Cache misses that joined an upstream fetch already in flight for the same ISBN")
+            .register(meterRegistry);
+        googleBooksClient = httpClients.createWebClient("google-books", googleBooksBaseUrl,
+            bookInfoService.getGoogleBooks().timeoutMs(), googleBooksMaxConnections);
+        openLibraryClient = httpClients.createWebClient("open-library", openLibraryBaseUrl,
+            bookInfoService.getOpenLibrary().timeoutMs(), openLibraryMaxConnections);
+
+        openLibraryBatches = openLibraryLookups.asFlux()
+            .bufferTimeout(openLibraryBatchSize, Duration.ofMillis(openLibraryBatchLingerMs), true)
+            .flatMap(this::sendOpenLibraryBatch)
+            .subscribe();
+    }
+
+    @PreDestroy
+    private void stop() {
+        openLibraryBatches.dispose();
+    }
+
+    /**
+     * Retrieves book information from cache or external APIs without blocking.
+     * Behaves like {@link BookInfoService#getBookInfo(String)}: near cache, then Redis, then both APIs
+     * concurrently, with concurrent misses for the same ISBN sharing one fetch and unknown ISBNs
+     * remembered for a short time.
+     *
+     * @param isbn The ISBN of the book to lookup
+     * @return The consolidated BookInfo, or empty if the ISBN is unknown
+     */
+    public Mono<BookInfo> getBookInfo(@NonNull String isbn) {
+        return Mono.defer(() -> {
+            var cached = nearCache.get(isbn);
+            if (cached != null) {
+                return Mono.just(bookInfoService.refreshIfStale(cached));
+            }
+            return lookup(isbn);
+        });
+    }
+
+    /**
+     * Retrieves book information for many ISBNs at once without blocking.
+     * Near cache hits are served directly, the remaining ISBNs are read from Redis concurrently,
+     * which Lettuce sends as one pipeline, and only the misses are fetched from the external APIs.
+     *
+     * @param isbns The ISBNs of the books to lookup
+     * @return BookInfo objects keyed by ISBN, unknown ISBNs are left out
+     */
+    public Mono<Map<String, BookInfo>> getBookInfos(@NonNull Collection<String> isbns) {
+        return Mono.defer(() -> {
+            var hits = new LinkedHashMap<String, BookInfo>();
+            var remaining = new ArrayList<String>();
+            for (var isbn : new LinkedHashSet<>(isbns)) {
+                var cached = nearCache.get(isbn);
+                if (cached != null) {
+                    hits.put(isbn, bookInfoService.refreshIfStale(cached));
+                } else {
+                    remaining.add(isbn);
+                }
+            }
+            return Flux.fromIterable(remaining)
+                .flatMapSequential(this::lookup)
+                .collect(() -> hits, (bookInfos, bookInfo) -> bookInfos.put(bookInfo.getIsbn(), bookInfo));
+        });
+    }
+
+    /**
+     * Looks up an ISBN that is not in the near cache, in Redis first and then at the external APIs.
+     *
+     * @param isbn The ISBN of the book
+     * @return The BookInfo, or empty if the ISBN is unknown
+     */
+    private Mono<BookInfo> lookup(String isbn) {
+        return readCached(isbn)
+            .switchIfEmpty(isKnownNotFound(isbn)
+                .flatMap(notFound -> notFound ? Mono.<BookInfo>empty() : fetchCoalesced(isbn)));
+    }
+
+    /**
+     * Reads a BookInfo from Redis, the way the RedisRepository stores it.
+     *
+     * @param isbn The ISBN of the book
+     * @return The cached BookInfo, or empty if it isn't cached
+     */
+    private Mono<BookInfo> readCached(String isbn) {
+        var key = BookInfoService.BOOK_INFO_KEYSPACE + ":" + isbn;
+        return reactiveBookInfoRedisTemplate.<byte[], byte[]>opsForHash()
+            .entries(key)
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+            .filter(hash -> !hash.isEmpty())
+            .map(hash -> bookInfoService.readBookInfo(isbn, hash))
+            .flatMap(bookInfo -> bookInfo.getFetchedAt() > 0
+                ? Mono.just(bookInfo)
+                // Entries written without fetchedAt are aged by their remaining TTL, like the repository reads them
+                : reactiveBookInfoRedisTemplate.getExpire(key)
+                    .map(ttl -> {
+                        bookInfo.setTimeToLive(ttl.getSeconds());
+                        return bookInfo;
+                    })
+                    .defaultIfEmpty(bookInfo))
+            .map(bookInfo -> {
+                nearCache.put(bookInfo);
+                // Indexing takes the write lock of the search index, which a rebuild holds for a while,
+                // so it must not run on the event loop
+                Schedulers.boundedElastic().schedule(() -> searchIndex.indexBookInfo(bookInfo));
+                return bookInfoService.refreshIfStale(bookInfo);
+            });
+    }
+
+    private Mono<Boolean> isKnownNotFound(String isbn) {
+        return reactiveStringRedisTemplate.hasKey(BookInfoService.NOT_FOUND_KEY_PREFIX + isbn);
+    }
+
+    /**
+     * Fetches book information, joining an upstream fetch for the same ISBN if one is already running.
+     * The fetch keeps running if all callers cancel, so its result is still cached.
+     *
+     * @param isbn The ISBN of the book to fetch information for
+     * @return The fetched and cached information, or empty if the ISBN is unknown
+     */
+    private Mono<BookInfo> fetchCoalesced(String isbn) {
+        return Mono.defer(() -> {
+            var running = inFlight.get(isbn);
+            if (running != null) {
+                coalescedRequests.increment();
+                return running;
+            }
+            // Leave the in-flight map first, so later misses read the cached result instead.
+            // Only remove this fetch, never a newer one for the same ISBN
+            var fetch = new AtomicReference<Mono<BookInfo>>();
+            fetch.set(fetchAndCacheBookInfo(isbn)
+                .doFinally(signal -> inFlight.remove(isbn, fetch.get()))
+                .cache());
+            running = inFlight.putIfAbsent(isbn, fetch.get());
+            if (running != null) {
+                coalescedRequests.increment();
+                return running;
+            }
+            return fetch.get();
+        });
+    }
+
+    /**
+     * Queries Google Books and Open Library concurrently and caches the merged result.
+     * A source that fails, times out or is rejected by its guard is skipped, the partial result is
+     * cached like {@link BookInfoService#cache(BookInfo, boolean)} describes. If both APIs answered
+     * and neither knows the ISBN, this is cached as not found.
+     *
+     * @param isbn The ISBN of the book to fetch information for
+     * @return The fetched and cached information, or empty if the ISBN is unknown
+     */
+    private Mono<BookInfo> fetchAndCacheBookInfo(String isbn) {
+        var google = callUpstream(bookInfoService.getGoogleBooks(), googleBooksClient.get()
+            .uri(BookInfoService.GOOGLE_BOOKS_API + isbn)
+            .retrieve()
+            .bodyToMono(GoogleBooksResponse.class)
+            .mapNotNull(BookInfoService::firstVolume));
+
+        return Mono.zip(google, lookupOpenLibrary(isbn)).flatMap(lookups -> {
+            Lookup<VolumeInfo> googleLookup = lookups.getT1();
+            Lookup<Map<String, Object>> openLibraryLookup = lookups.getT2();
+            var bookInfo = bookInfoService.merge(isbn, googleLookup.value(), openLibraryLookup.value());
+            if (bookInfo.getTitle() != null) {
+                boolean complete = googleLookup.answered() && openLibraryLookup.answered();
+                return Mono.fromCallable(() -> bookInfoService.cache(bookInfo, complete))
+                    .subscribeOn(Schedulers.boundedElastic());
+            }
+            // Only remember the ISBN as unknown if no source failed, a failure may hide a real result
+            if (googleLookup.answered() && openLibraryLookup.answered()) {
+                return reactiveStringRedisTemplate.opsForValue()
+                    .set(BookInfoService.NOT_FOUND_KEY_PREFIX + isbn, "", Duration.ofSeconds(negativeCacheTtlSeconds))
+                    .then(Mono.empty());
+            }
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * Runs a single upstream call, paced by the rate limiter and guarded by the circuit breaker and
+     * bulkhead the upstream shares with the blocking variant.
+     * A call over the rate limit is delayed by a timer, without holding a thread. The returned Mono
+     * never fails: failures, timeouts, an open circuit, a full bulkhead and a too long wait for the
+     * rate limiter all complete it with an unanswered lookup.
+     *
+     * @param upstream The upstream to call
+     * @param call     The request to the upstream, empty if the upstream doesn't know the ISBN
+     * @return The lookup result
+     */
+    private <T> Mono<Lookup<T>> callUpstream(Upstream upstream, Mono<T> call) {
+        return Mono.defer(() -> {
+            var guard = upstream.guard();
+            // Don't spend a token on a call the circuit would reject anyway
+            if (guard.isOpen()) {
+                return Mono.just(Lookup.<T>failed());
+            }
+            long waitNanos = upstream.rateLimiter().reserve(TimeUnit.MILLISECONDS.toNanos(rateLimitMaxWaitMs));
+            if (waitNanos < 0) {
+                return Mono.just(Lookup.<T>failed());
+            }
+
+            var guardedCall = Mono.defer(() -> {
+                if (!guard.tryAcquire()) {
+                    return Mono.just(Lookup.<T>failed());
+                }
+                // Calls slower than the timeout count as failures of the upstream
+                return call
+                    .map(value -> new Lookup<>(value, true))
+                    .defaultIfEmpty(new Lookup<>(null, true))
+                    .timeout(Duration.ofMillis(upstream.timeoutMs()))
+                    .doOnSuccess(lookup -> guard.release(true))
+                    .doOnError(e -> guard.release(false))
+                    .doOnCancel(guard::cancel)
+                    .onErrorReturn(Lookup.failed());
+            });
+            return waitNanos > 0 ? guardedCall.delaySubscription(Duration.ofNanos(waitNanos)) : guardedCall;
+        });
+    }
+
+    /**
+     * Looks up an ISBN at Open Library as part of a multi-ISBN request.
+     * Lookups arriving within batch-linger-ms are bundled into one request of at most batch-size ISBNs,
+     * which costs a single rate limiter token.
+     *
+     * @param isbn The ISBN to look up
+     * @return The book data of the ISBN, never fails
+     */
+    private Mono<Lookup<Map<String, Object>>> lookupOpenLibrary(String isbn) {
+        return Mono.defer(() -> {
+            var lookup = new OpenLibraryLookup(isbn, Sinks.one());
+            // Lookups are emitted from many threads, retry while another thread is emitting
+            openLibraryLookups.emitNext(lookup, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+            return lookup.result().asMono();
+        }).onErrorReturn(Lookup.failed());
+    }
+
+    private Mono<Void> sendOpenLibraryBatch(List<OpenLibraryLookup> batch) {
+        var isbns = batch.stream().map(OpenLibraryLookup::isbn).distinct().toList();
+        Mono<Map<String, Map<String, Object>>> call = openLibraryClient.get()
+            .uri(BookInfoService.OPEN_LIBRARY_API, BookInfoService.bibkeys(isbns))
+            .retrieve()
+            .bodyToMono(Map.class)
+            .map(response -> BookInfoService.booksByIsbn(response, isbns));
+
+        return callUpstream(bookInfoService.getOpenLibrary(), call)
+            .doOnNext(result -> batch.forEach(lookup -> lookup.result().tryEmitValue(result.answered()
+                ? new Lookup<>(result.value() != null ? result.value().get(lookup.isbn()) : null, true)
+                : Lookup.failed())))
+            .then();
+    }
+
+    /**
+     * An Open Library lookup waiting to be sent with the next batch.
+     *
+     * @param isbn   The ISBN to look up
+     * @param result Receives the book data of the ISBN
+     */
+    private record OpenLibraryLookup(String isbn, Sinks.One<Lookup<Map<String, Object>>> result) {
+    }
+}
@@ -0,0 +1,132 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Circuit breaker and bulkhead for calls to one upstream API.
+ * The bulkhead limits the number of concurrent calls, so a slow upstream can occupy at most
+ * max-concurrent threads of the shared upstream pool. After failure-threshold consecutive failures
+ * the circuit opens and calls are rejected without trying for open-duration. Then a single trial
+ * call is let through, and its outcome closes the circuit again or keeps it open.
+ * Rejected calls never block, the caller continues with the data of the other sources.
+ */
+public class UpstreamGuard {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final Semaphore permits;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialRunning;
+
+    private final Counter rejectedByCircuit;
+    private final Counter rejectedByBulkhead;
+
+    public UpstreamGuard(String upstream, int maxConcurrent, int failureThreshold, long openMillis,
+            MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrent);
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+
+        Gauge.builder("bookinfo.upstream.circuit.state", this, guard -> guard.getState().ordinal())
+            .description("Circuit state of the upstream, 0 closed, 1 half open, 2 open")
+            .tag("upstream", upstream)
+            .register(meterRegistry);
+        Gauge.builder("bookinfo.upstream.active", permits, p -> maxConcurrent - p.availablePermits())
+            .description("Calls to the upstream currently running")
+            .tag("upstream", upstream)
+            .register(meterRegistry);
+        rejectedByCircuit = Counter.builder("bookinfo.upstream.rejected")
+            .description("Calls to the upstream rejected without trying")
+            .tags("upstream", upstream, "reason", "circuit")
+            .register(meterRegistry);
+        rejectedByBulkhead = Counter.builder("bookinfo.upstream.rejected")
+            .description("Calls to the upstream rejected without trying")
+            .tags("upstream", upstream, "reason", "bulkhead")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Asks for permission to call the upstream. Every granted call has to be ended with
+     * {@link #release(boolean)} or {@link #cancel()}.
+     *
+     * @return false if the circuit is open or the bulkhead is full
+     */
+    public boolean tryAcquire() {
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    rejectedByCircuit.increment();
+                    return false;
+                }
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialRunning) {
+                    rejectedByCircuit.increment();
+                    return false;
+                }
+                trialRunning = true;
+            }
+        }
+        if (!permits.tryAcquire()) {
+            synchronized (this) {
+                trialRunning = false;
+            }
+            rejectedByBulkhead.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Ends a granted call and records its outcome.
+     *
+     * @param success false if the call failed or took longer than its timeout
+     */
+    public void release(boolean success) {
+        permits.release();
+        synchronized (this) {
+            trialRunning = false;
+            if (success) {
+                consecutiveFailures = 0;
+                state = State.CLOSED;
+            } else if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Ends a granted call that never reached the upstream, without recording an outcome.
+     */
+    public void cancel() {
+        permits.release();
+        synchronized (this) {
+            trialRunning = false;
+        }
+    }
+
+    /**
+     * @return true while the circuit rejects all calls, a cheap check before queueing a call
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,150 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Creates the HTTP clients for the upstream APIs.
+ * Every upstream gets its own pool of keep-alive connections, so lookups reuse open TLS connections
+ * instead of paying a handshake per cache miss, and one upstream can't take the connections of another.
+ * The pools are exported as httpcomponents.httpclient.pool metrics tagged with the upstream, with
+ * leased, available (idle) and pending connections.
+ * The non-blocking WebClients of the reactive API get separate Reactor Netty pools with the same limits,
+ * exported as reactor.netty.connection.provider metrics named after the upstream.
+ */
+@Component
+public class UpstreamHttpClients {
+
+    @Autowired
+    private RestTemplateBuilder restTemplateBuilder;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${bookinfo.upstream.connect-timeout-ms:1000}")
+    private long connectTimeoutMs;
+
+    @Value("${bookinfo.upstream.http.pool-wait-ms:500}")
+    private long poolWaitMs;
+
+    @Value("${bookinfo.upstream.http.idle-timeout-seconds:30}")
+    private long idleTimeoutSeconds;
+
+    @Value("${bookinfo.upstream.http.connection-ttl-seconds:300}")
+    private long connectionTtlSeconds;
+
+    private final List<CloseableHttpClient> clients = new CopyOnWriteArrayList<>();
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a RestTemplate backed by a connection pool for one upstream host.
+     *
+     * @param upstream       Name of the upstream, used as metrics tag
+     * @param baseUrl        Root of the relative request URLs
+     * @param timeoutMs      Read timeout of a single request
+     * @param maxConnections Maximum number of connections to the upstream host
+     * @return The RestTemplate for the upstream
+     */
+    public RestTemplate create(String upstream, String baseUrl, long timeoutMs, int maxConnections) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnections)
+            .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(timeoutMs))
+                .setTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+                // Servers close idle keep-alive connections, check before reusing an old one
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build())
+            .build();
+
+        CloseableHttpClient client = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                // Callers wait at most pool-wait-ms for a free connection of a full pool
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolWaitMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(timeoutMs))
+                .build())
+            .evictIdleConnections(TimeValue.ofSeconds(idleTimeoutSeconds))
+            .evictExpiredConnections()
+            .build();
+        clients.add(client);
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, upstream, "upstream", upstream)
+            .bindTo(meterRegistry);
+
+        return restTemplateBuilder
+            .rootUri(baseUrl)
+            .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(client))
+            .build();
+    }
+
+    /**
+     * Creates a non-blocking WebClient backed by a connection pool for one upstream host.
+     * Requests and responses are handled on the Reactor Netty event loop, a waiting call holds no thread.
+     *
+     * @param upstream       Name of the upstream, used as pool name
+     * @param baseUrl        Root of the relative request URLs
+     * @param timeoutMs      Response timeout of a single request
+     * @param maxConnections Maximum number of connections to the upstream host
+     * @return The WebClient for the upstream
+     */
+    public WebClient createWebClient(String upstream, String baseUrl, long timeoutMs, int maxConnections) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(upstream)
+            .maxConnections(maxConnections)
+            // Callers wait at most pool-wait-ms for a free connection of a full pool
+            .pendingAcquireTimeout(Duration.ofMillis(poolWaitMs))
+            .maxIdleTime(Duration.ofSeconds(idleTimeoutSeconds))
+            .maxLifeTime(Duration.ofSeconds(connectionTtlSeconds))
+            .evictInBackground(Duration.ofSeconds(idleTimeoutSeconds))
+            .metrics(true)
+            .build();
+        connectionProviders.add(connectionProvider);
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeoutMs)
+            .responseTimeout(Duration.ofMillis(timeoutMs));
+
+        return webClientBuilder.clone()
+            .baseUrl(baseUrl)
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+
+    @PreDestroy
+    private void close() {
+        clients.forEach(client -> client.close(CloseMode.GRACEFUL));
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+}
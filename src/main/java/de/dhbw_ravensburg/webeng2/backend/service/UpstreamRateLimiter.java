@@ -0,0 +1,63 @@
+package de.dhbw_ravensburg.webeng2.backend.service;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Token bucket limiting the request rate to one upstream API.
+ * The bucket refills at rate-per-second tokens up to burst. A caller reserves a token and is told how
+ * long to wait for it. The bucket can go into debt, so every further caller waits behind the earlier
+ * ones, and callers are served in the order they arrived. A caller that would have to wait longer than
+ * it is willing to gets no token and doesn't delay anyone.
+ */
+public class UpstreamRateLimiter {
+
+    private final double tokensPerNano;
+    private final double burst;
+
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    private final Counter throttled;
+    private final Counter rejected;
+
+    public UpstreamRateLimiter(String upstream, double ratePerSecond, int burst, MeterRegistry meterRegistry) {
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+
+        throttled = Counter.builder("bookinfo.upstream.throttled")
+            .description("Calls to the upstream delayed by the rate limiter")
+            .tag("upstream", upstream)
+            .register(meterRegistry);
+        rejected = Counter.builder("bookinfo.upstream.rejected")
+            .description("Calls to the upstream rejected without trying")
+            .tags("upstream", upstream, "reason", "rate-limit")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Reserves a token for one call.
+     *
+     * @param maxWaitNanos The longest the caller is willing to wait
+     * @return The nanoseconds to wait before calling, or -1 if the wait would be longer than maxWaitNanos
+     */
+    public synchronized long reserve(long maxWaitNanos) {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+
+        long wait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        if (wait > maxWaitNanos) {
+            rejected.increment();
+            return -1;
+        }
+        tokens -= 1;
+        if (wait > 0) {
+            throttled.increment();
+        }
+        return wait;
+    }
+}